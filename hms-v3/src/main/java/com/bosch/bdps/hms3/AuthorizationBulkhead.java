@@ -0,0 +1,170 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Isolates authorization requests into compartments per policy type (user, database,
+ * table, partition, column), so e.g. a flood of partition checks cannot use up the
+ * capacity needed for database and table checks. Within a compartment, every principal
+ * gets a fair share: while several principals compete, none of them may hold more than
+ * {@code limit / competingPrincipals} slots.
+ */
+public class AuthorizationBulkhead {
+
+    private final Map<String, Compartment> compartments;
+
+    public AuthorizationBulkhead(Map<String, Integer> limits) {
+        this.compartments = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : limits.entrySet()) {
+            this.compartments.put(entry.getKey(), new Compartment(entry.getValue()));
+        }
+    }
+
+    /**
+     * Waits at most {@code maxWaitMillis} for a slot in the compartment of the given type.
+     *
+     * @return true if a slot was acquired and {@link #release(String, String)} must be called
+     */
+    public boolean acquire(String type, String principal, long maxWaitMillis) throws InterruptedException {
+        Compartment compartment = compartments.get(type);
+        return compartment == null || compartment.acquire(principal, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+    }
+
+    public void release(String type, String principal) {
+        Compartment compartment = compartments.get(type);
+        if (compartment != null) {
+            compartment.release(principal);
+        }
+    }
+
+    /**
+     * Changes the budget of a policy type at runtime. Requests already holding a slot
+     * keep it, new ones are admitted according to the new limit.
+     */
+    public void setLimit(String type, int limit) {
+        Compartment compartment = compartments.get(type);
+        if (compartment != null) {
+            compartment.setLimit(limit);
+        }
+    }
+
+    public int getInFlight(String type) {
+        Compartment compartment = compartments.get(type);
+        return compartment == null ? 0 : compartment.getInFlight();
+    }
+
+    private static final class Compartment {
+        private int limit;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition released = lock.newCondition();
+        private final Map<String, Integer> held = new HashMap<>();
+        private final Map<String, Integer> waiting = new HashMap<>();
+        private int inFlight;
+
+        Compartment(int limit) {
+            this.limit = checkLimit(limit);
+        }
+
+        void setLimit(int limit) {
+            lock.lock();
+            try {
+                this.limit = checkLimit(limit);
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static int checkLimit(int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("Bulkhead limit must be positive: " + limit);
+            }
+            return limit;
+        }
+
+        boolean acquire(String principal, long remainingNanos) throws InterruptedException {
+            lock.lock();
+            try {
+                increment(waiting, principal);
+                try {
+                    while (!admissible(principal)) {
+                        if (remainingNanos <= 0L) {
+                            return false;
+                        }
+                        remainingNanos = released.awaitNanos(remainingNanos);
+                    }
+                } finally {
+                    decrement(waiting, principal);
+                }
+                increment(held, principal);
+                inFlight++;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(String principal) {
+            lock.lock();
+            try {
+                decrement(held, principal);
+                inFlight--;
+                // Waiters of different principals wait for different things, wake all of them.
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getInFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean admissible(String principal) {
+            if (inFlight >= limit) {
+                return false;
+            }
+            int competing = held.size();
+            for (String waiter : waiting.keySet()) {
+                if (!held.containsKey(waiter)) {
+                    competing++;
+                }
+            }
+            int fairShare = Math.max(1, limit / Math.max(1, competing));
+            return held.getOrDefault(principal, 0) < fairShare;
+        }
+
+        private static void increment(Map<String, Integer> counts, String principal) {
+            counts.merge(principal, 1, Integer::sum);
+        }
+
+        private static void decrement(Map<String, Integer> counts, String principal) {
+            counts.computeIfPresent(principal, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Holds everything the authorizer shares within the JVM for one OPA endpoint: the client
+ * and its connections, limiter, bulkheads, caches, metrics and MBean. HMS creates one
+ * provider per handler thread; providers only keep references to the components of the
+ * engine of their endpoint. Components are created on first use and afterwards tuned in
+ * place when settings change, so the base endpoint is the only part of the configuration
+ * that selects an engine.
+ */
+public final class AuthorizationEngine {
+
+    private static final ConcurrentMap<String, AuthorizationEngine> ENGINES = new ConcurrentHashMap<>();
+
+    private final String endpoint;
+    private final ConcurrentMap<String, Object> components = new ConcurrentHashMap<>();
+
+    private AuthorizationEngine(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public static AuthorizationEngine forEndpoint(String endpoint) {
+        AuthorizationEngine engine = ENGINES.get(endpoint);
+        return engine != null ? engine : ENGINES.computeIfAbsent(endpoint, AuthorizationEngine::new);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Returns the component of the given type, creating it on first use. Looking up an
+     * existing component takes no lock.
+     *
+     * @param qualifier tells apart components of the same type, e.g. the path of an
+     *                  entitlement index; empty if there is only one
+     */
+    public <T> T component(Class<T> type, String qualifier, Supplier<? extends T> factory) {
+        String key = type.getName() + "|" + qualifier;
+        Object component = components.get(key);
+        if (component == null) {
+            component = components.computeIfAbsent(key, k -> factory.get());
+        }
+        return type.cast(component);
+    }
+
+    /**
+     * Returns the component of the given type, or null if it has not been created yet.
+     */
+    public <T> T getComponent(Class<T> type, String qualifier) {
+        return type.cast(components.get(type.getName() + "|" + qualifier));
+    }
+
+    /**
+     * Removes the components of the given type whose qualifier matches, e.g. those for
+     * settings no longer in use, and returns them so they can be shut down.
+     */
+    public <T> List<T> removeComponents(Class<T> type, Predicate<String> qualifier) {
+        String prefix = type.getName() + "|";
+        List<T> removed = new ArrayList<>();
+        for (Map.Entry<String, Object> component : components.entrySet()) {
+            if (component.getKey().startsWith(prefix)
+                    && qualifier.test(component.getKey().substring(prefix.length()))
+                    && components.remove(component.getKey(), component.getValue())) {
+                removed.add(type.cast(component.getValue()));
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for one authorization check, from the provider being called
+ * until the decision is known, or the check is deferred to the end of the metastore
+ * call. Only checks taking longer than the threshold are recorded; while the event is
+ * disabled, only the start time is taken.
+ */
+@Name("com.bosch.bdps.opa.Authorization")
+@Label("OPA Authorization")
+@Category({"Hive Metastore", "OPA Authorizer"})
+@Description("Authorization check of the Hive Metastore OPA authorizer")
+@StackTrace(false)
+@Threshold("10 ms")
+final class AuthorizationEvent extends Event {
+
+    @Label("Policy")
+    String policy;
+
+    @Label("Type")
+    String type;
+
+    @Label("User")
+    String user;
+
+    @Label("Resource")
+    String resource;
+
+    @Label("Source")
+    @Description("Where the decision came from: entitlements, scope, cache, residual or opa; deferred if the check "
+            + "is decided at the end of the metastore call, error if there is no decision")
+    String source;
+
+    @Label("Cache Outcome")
+    @Description("hit, miss, uncacheable or disabled")
+    String cacheOutcome;
+
+    @Label("Decided")
+    @Description("Whether the decision is known; false for deferred checks and errors")
+    boolean decided;
+
+    @Label("Allowed")
+    @Description("The decision, false unless decided")
+    boolean allowed;
+
+    static AuthorizationEvent start() {
+        AuthorizationEvent event = new AuthorizationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and tells whether it is recorded, so its fields are only computed then.
+     */
+    boolean finish() {
+        end();
+        return shouldCommit();
+    }
+
+    void record(String policy, String type, String user, String resource, String source,
+                String cacheOutcome, Boolean allowed) {
+        this.policy = policy;
+        this.type = type;
+        this.user = user;
+        this.resource = resource;
+        this.source = source;
+        this.cacheOutcome = cacheOutcome;
+        this.decided = allowed != null;
+        this.allowed = Boolean.TRUE.equals(allowed);
+        commit();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The decisions taken for one metastore call. The pre-event listener opens a scope on the
+ * handler thread before the authorizers run and closes it afterwards, so identical checks
+ * within the call are answered once.
+ * <p>
+ * A provider can also defer the checks it would send to OPA while the scope is collecting.
+ * They are then evaluated together in {@link #resolve()}, and the listener runs the
+ * authorizers a second time, answered from the scope, only if one of them was denied.
+ */
+final class AuthorizationScope {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuthorizationScope.class);
+    private static final ThreadLocal<AuthorizationScope> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Evaluates deferred checks, returning the decisions by key. Checks without a decision
+     * are sent to OPA one by one when the authorizers run again.
+     */
+    interface Evaluator {
+        Map<String, Boolean> evaluate(Map<String, Check> checks) throws Exception;
+    }
+
+    static final class Check {
+        final String type;
+        final String path;
+        final Map<String, Object> request;
+        // Null for the base endpoint.
+        final OpaRoute route;
+
+        Check(String type, String path, Map<String, Object> request, OpaRoute route) {
+            this.type = type;
+            this.path = path;
+            this.request = request;
+            this.route = route;
+        }
+    }
+
+    private final Map<String, Boolean> decisions = new HashMap<>();
+    private final Map<Evaluator, Map<String, Check>> deferred = new LinkedHashMap<>();
+    private boolean collecting = true;
+
+    private AuthorizationScope() {
+    }
+
+    /**
+     * Opens a scope on the current thread, or returns null if one is open already.
+     */
+    static AuthorizationScope open() {
+        if (CURRENT.get() != null) {
+            return null;
+        }
+        AuthorizationScope scope = new AuthorizationScope();
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Returns the scope of the current thread, or null outside of a metastore call.
+     */
+    static AuthorizationScope current() {
+        return CURRENT.get();
+    }
+
+    void close() {
+        CURRENT.remove();
+    }
+
+    Boolean get(String key) {
+        return decisions.get(key);
+    }
+
+    void put(String key, boolean allowed) {
+        decisions.put(key, allowed);
+    }
+
+    boolean isCollecting() {
+        return collecting;
+    }
+
+    void defer(String key, Check check, Evaluator evaluator) {
+        deferred.computeIfAbsent(evaluator, e -> new LinkedHashMap<>()).put(key, check);
+    }
+
+    /**
+     * Evaluates the deferred checks and stops collecting.
+     *
+     * @return true if all deferred checks were allowed, false if one was denied or could
+     * not be evaluated, so the authorizers have to run again
+     */
+    boolean resolve() {
+        collecting = false;
+        boolean allowed = true;
+        for (Map.Entry<Evaluator, Map<String, Check>> entry : deferred.entrySet()) {
+            Map<String, Check> checks = entry.getValue();
+            try {
+                decisions.putAll(entry.getKey().evaluate(checks));
+            } catch (Exception e) {
+                LOG.warn("Failed to evaluate {} checks in one query, checking them one by one: {}",
+                        checks.size(), e.getMessage());
+            }
+            for (String key : checks.keySet()) {
+                allowed &= Boolean.TRUE.equals(decisions.get(key));
+            }
+        }
+        deferred.clear();
+        return allowed;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runtime state of the authorizer for one OPA endpoint, registered as
+ * {@code com.bosch.bdps.opa:type=Authorizer,endpoint="<endpoint>"}. Health is tracked
+ * from the outcome of authorization requests and can be probed on demand. The revision of
+ * the policy bundles OPA is serving is taken from its responses, or fetched by a probe.
+ */
+public class AuthorizerStatus implements AuthorizerStatusMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuthorizerStatus.class);
+
+    private final String endpoint;
+    private final OpaBasedAuthorizationProvider.OpaHttpClient opa;
+    private volatile String probePath;
+
+    private volatile AdaptiveConcurrencyLimiter limiter;
+    private volatile DecisionCache decisions;
+    private volatile ShadowEvaluator shadow;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile String lastError;
+    private volatile Instant lastHealthCheck;
+    private volatile boolean ready = true;
+
+    /**
+     * @param probePath policy queried without input when probing, to learn the bundle revision
+     */
+    public AuthorizerStatus(String endpoint, OpaBasedAuthorizationProvider.OpaHttpClient opa, String probePath) {
+        this.endpoint = endpoint;
+        this.opa = opa;
+        this.probePath = probePath;
+    }
+
+    /**
+     * Registers the bean with the platform MBean server, failures are only logged.
+     */
+    public AuthorizerStatus register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(
+                    "com.bosch.bdps.opa:type=Authorizer,endpoint=" + ObjectName.quote(endpoint)));
+        } catch (InstanceAlreadyExistsException e) {
+            LOG.debug("Authorizer MBean for {} is already registered", endpoint);
+        } catch (Exception e) {
+            LOG.warn("Failed to register authorizer MBean for {}: {}", endpoint, e.getMessage());
+        }
+        return this;
+    }
+
+    /**
+     * Points the bean to the components currently configured for the endpoint, any of them may be null.
+     */
+    public void attach(AdaptiveConcurrencyLimiter limiter, DecisionCache decisions, ShadowEvaluator shadow,
+                       String probePath) {
+        this.limiter = limiter;
+        this.decisions = decisions;
+        this.shadow = shadow;
+        this.probePath = probePath;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    public void recordFailure(Exception e) {
+        consecutiveFailures.incrementAndGet();
+        lastError = Instant.now() + " " + e.getMessage();
+    }
+
+    @Override
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public int getCacheSize() {
+        DecisionCache cache = decisions;
+        return cache == null ? -1 : cache.size();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        DecisionCache cache = decisions;
+        return cache == null ? -1 : cache.getHitCount();
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        DecisionCache cache = decisions;
+        return cache == null ? -1 : cache.getMissCount();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        DecisionCache cache = decisions;
+        if (cache == null) {
+            return -1;
+        }
+        long hits = cache.getHitCount();
+        long lookups = hits + cache.getMissCount();
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public long getCacheRefreshCount() {
+        DecisionCache cache = decisions;
+        return cache == null ? -1 : cache.getRefreshCount();
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        AdaptiveConcurrencyLimiter current = limiter;
+        return current == null ? opa.getTransport().getActiveRequests() : current.getInFlight();
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        AdaptiveConcurrencyLimiter current = limiter;
+        return current == null ? -1 : current.getLimit();
+    }
+
+    @Override
+    public long getRejectedRequests() {
+        AdaptiveConcurrencyLimiter current = limiter;
+        return current == null ? -1 : current.getRejectedCount();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return opa.getTransport().getActiveRequests();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return opa.getTransport().getIdleConnections();
+    }
+
+    @Override
+    public long getFullTlsHandshakes() {
+        return opa.getTransport().getFullTlsHandshakes();
+    }
+
+    @Override
+    public long getResumedTlsHandshakes() {
+        return opa.getTransport().getResumedTlsHandshakes();
+    }
+
+    @Override
+    public long getRetries() {
+        RetryPolicy retries = opa.getRetryPolicy();
+        return retries == null ? -1 : retries.getRetryCount();
+    }
+
+    @Override
+    public long getRetriesDeniedByBudget() {
+        RetryPolicy retries = opa.getRetryPolicy();
+        return retries == null ? -1 : retries.getBudgetExhaustedCount();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return consecutiveFailures.get() == 0;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    @Override
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public String getLastHealthCheck() {
+        Instant checked = lastHealthCheck;
+        return checked == null ? null : checked.toString();
+    }
+
+    @Override
+    public String getPolicyRevision() {
+        return opa.getPolicyRevision();
+    }
+
+    @Override
+    public String[] getRuleLatencies() {
+        OpaMetrics metrics = opa.getMetrics();
+        if (metrics == null) {
+            return new String[0];
+        }
+        List<String> latencies = new ArrayList<>();
+        for (Map.Entry<String, Map<String, LatencyHistogram>> rule : metrics.snapshot().entrySet()) {
+            for (Map.Entry<String, LatencyHistogram> timer : rule.getValue().entrySet()) {
+                latencies.add(rule.getKey() + " " + timer.getKey() + ": " + timer.getValue());
+            }
+        }
+        return latencies.toArray(new String[0]);
+    }
+
+    @Override
+    public long getShadowEvaluations() {
+        ShadowEvaluator current = shadow;
+        return current == null ? -1 : current.getEvaluatedCount();
+    }
+
+    @Override
+    public long getShadowMismatches() {
+        ShadowEvaluator current = shadow;
+        return current == null ? -1 : current.getMismatchCount();
+    }
+
+    @Override
+    public long getShadowErrors() {
+        ShadowEvaluator current = shadow;
+        return current == null ? -1 : current.getErrorCount();
+    }
+
+    @Override
+    public long getShadowDropped() {
+        ShadowEvaluator current = shadow;
+        return current == null ? -1 : current.getDroppedCount();
+    }
+
+    @Override
+    public void flushDecisionCache() {
+        DecisionCache cache = decisions;
+        if (cache != null) {
+            cache.invalidateAll();
+            LOG.info("Flushed decision cache of {}", endpoint);
+        }
+    }
+
+    // Decision keys are rule|user|groups|resources..., see OpaBasedAuthorizationProvider. The
+    // user is * in decisions shared by all users of the same groups.
+
+    @Override
+    public int flushUser(String user) {
+        DecisionCache cache = decisions;
+        if (cache == null) {
+            return 0;
+        }
+        int flushed = cache.invalidate(key -> key.split("\\|", 3)[1].equals(user));
+        if (flushed < 0) {
+            LOG.warn("Decision store of {} cannot select decisions by user, flushed all decisions instead of those of {}",
+                    endpoint, user);
+        } else {
+            LOG.info("Flushed {} cached decisions of user {} for {}", flushed, user, endpoint);
+        }
+        return flushed;
+    }
+
+    @Override
+    public int flushTable(String database, String table) {
+        DecisionCache cache = decisions;
+        if (cache == null) {
+            return 0;
+        }
+        String name = database + "." + table;
+        int flushed = cache.invalidate(key -> key.contains("|table=" + name + "|")
+                || key.contains("|partition=" + name + "["));
+        if (flushed < 0) {
+            LOG.warn("Decision store of {} cannot select decisions by table, flushed all decisions instead of those of {}",
+                    endpoint, name);
+        } else {
+            LOG.info("Flushed {} cached decisions of table {} for {}", flushed, name, endpoint);
+        }
+        return flushed;
+    }
+
+    @Override
+    public boolean checkHealth() {
+        lastHealthCheck = Instant.now();
+        try {
+            if (!opa.isHealthy()) {
+                recordFailure(new IllegalStateException("OPA reports it is not ready"));
+                return false;
+            }
+            opa.getRevision(probePath);
+            recordSuccess();
+            return true;
+        } catch (Exception e) {
+            recordFailure(e);
+            LOG.warn("Health check of {} failed: {}", endpoint, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+/**
+ * JMX view of the authorizer for one OPA endpoint. Values that do not apply, e.g. cache
+ * statistics while the decision cache is disabled, are reported as -1.
+ */
+public interface AuthorizerStatusMBean {
+
+    String getEndpoint();
+
+    int getCacheSize();
+
+    long getCacheHitCount();
+
+    long getCacheMissCount();
+
+    double getCacheHitRatio();
+
+    long getCacheRefreshCount();
+
+    int getInFlightRequests();
+
+    int getConcurrencyLimit();
+
+    long getRejectedRequests();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    long getFullTlsHandshakes();
+
+    long getResumedTlsHandshakes();
+
+    long getRetries();
+
+    /**
+     * Requests that were not retried because the retry budget was used up.
+     */
+    long getRetriesDeniedByBudget();
+
+    boolean isHealthy();
+
+    /**
+     * False while the authorizer is warming up.
+     */
+    boolean isReady();
+
+    int getConsecutiveFailures();
+
+    String getLastError();
+
+    String getLastHealthCheck();
+
+    /**
+     * Revisions of the policy bundles, as last reported by OPA in a decision or health check.
+     */
+    String getPolicyRevision();
+
+    /**
+     * Client and OPA timings per rule, one line per rule and timer, e.g.
+     * {@code hms/table_allow server_eval: count=120, mean=0.412ms, p50<=0.512ms, p99<=2.048ms}.
+     * Empty while {@code metrics.mode} is off.
+     */
+    String[] getRuleLatencies();
+
+    /**
+     * Requests decided again by the candidate policy of the shadow evaluation.
+     */
+    long getShadowEvaluations();
+
+    /**
+     * Shadow evaluations in which the candidate policy decided differently.
+     */
+    long getShadowMismatches();
+
+    long getShadowErrors();
+
+    /**
+     * Samples dropped because the shadow executor was saturated.
+     */
+    long getShadowDropped();
+
+    void flushDecisionCache();
+
+    /**
+     * Drops the cached decisions of a user.
+     *
+     * @return the number of dropped decisions, or -1 if the decision store cannot select
+     *         them by user, e.g. the off-heap store, and all decisions were dropped
+     */
+    int flushUser(String user);
+
+    /**
+     * Drops the cached decisions of a table and its partitions.
+     *
+     * @return the number of dropped decisions, or -1 if the decision store cannot select
+     *         them by table, e.g. the off-heap store, and all decisions were dropped
+     */
+    int flushTable(String database, String table);
+
+    boolean checkHealth();
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.ql.metadata.Partition;
+import org.apache.hadoop.hive.ql.security.authorization.Privilege;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Does the work the first authorization requests would otherwise pay for, before the
+ * metastore takes requests: building the JSON serializers of the Thrift objects sent to
+ * OPA, resolving the endpoint and opening a number of connections to it, and optionally
+ * sending one synthetic request per policy, so OPA has compiled the rules.
+ */
+public class AuthorizerWarmup {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuthorizerWarmup.class);
+
+    static final String SYNTHETIC_USER = "hms-warmup";
+
+    private static final Class<?>[] RESOURCE_TYPES = {Database.class, Table.class, Partition.class, Privilege.class};
+
+    private final OpaBasedAuthorizationProvider.OpaHttpClient opa;
+    private final int connections;
+    private final Map<String, String> policyUrls;
+
+    /**
+     * @param connections number of connections opened in parallel and validated against OPA's health API
+     * @param policyUrls  policy type -> policy path receiving a synthetic request, may be empty
+     */
+    public AuthorizerWarmup(OpaBasedAuthorizationProvider.OpaHttpClient opa, int connections, Map<String, String> policyUrls) {
+        this.opa = opa;
+        this.connections = connections;
+        this.policyUrls = policyUrls;
+    }
+
+    /**
+     * Runs the warm-up on a daemon thread.
+     *
+     * @return completes with the result of {@link #run()}
+     */
+    public CompletableFuture<Boolean> start() {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> result.complete(run()), "opa-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    /**
+     * Runs all steps, a failing step does not stop the following ones.
+     *
+     * @return true if every step succeeded
+     */
+    public boolean run() {
+        long start = System.nanoTime();
+        boolean warm = prepareSerializers();
+        warm &= openConnections();
+        warm &= sendSyntheticRequests();
+        LOG.info("Authorizer warm-up {} after {} ms", warm ? "finished" : "finished with errors",
+                (System.nanoTime() - start) / 1_000_000);
+        return warm;
+    }
+
+    private boolean prepareSerializers() {
+        try {
+            opa.prepareSerializers(RESOURCE_TYPES);
+            return true;
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to prepare serializers: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // The connections are opened at the same time, so each request needs one of its own;
+    // afterwards they stay in the transport's keep-alive pool.
+    private boolean openConnections() {
+        if (connections <= 0) {
+            return true;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(connections, runnable -> {
+            Thread thread = new Thread(runnable, "opa-warmup-connect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Callable<Boolean>> probes = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            probes.add(opa::isHealthy);
+        }
+        int healthy = 0;
+        try {
+            for (Future<Boolean> probe : executor.invokeAll(probes)) {
+                try {
+                    if (probe.get()) {
+                        healthy++;
+                    }
+                } catch (ExecutionException e) {
+                    LOG.debug("Warm-up connection failed: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executor.shutdown();
+        }
+        if (healthy < connections) {
+            LOG.warn("Only {} of {} warm-up connections found OPA ready", healthy, connections);
+            return false;
+        }
+        return true;
+    }
+
+    // The decisions are thrown away; only the policy has to be reached without error.
+    private boolean sendSyntheticRequests() {
+        boolean sent = true;
+        for (Map.Entry<String, String> policy : policyUrls.entrySet()) {
+            try {
+                opa.check(policy.getValue(), syntheticRequest(policy.getKey()));
+            } catch (Exception e) {
+                LOG.warn("Synthetic request to {} failed: {}", policy.getValue(), e.getMessage());
+                sent = false;
+            }
+        }
+        return sent;
+    }
+
+    // Shaped like the requests of OpaBasedAuthorizationProvider for a resource named warmup.warmup.
+    static Map<String, Object> syntheticRequest(String type) {
+        Map<String, Object> identity = new HashMap<>();
+        identity.put("username", SYNTHETIC_USER);
+        identity.put("groups", Collections.emptyList());
+
+        Database database = new Database();
+        database.setName("warmup");
+        Table table = new Table();
+        table.setDbName("warmup");
+        table.setTableName("warmup");
+
+        Map<String, Object> resources = new HashMap<>();
+        resources.put("database", "database".equals(type) ? database : null);
+        resources.put("table", "table".equals(type) || "column".equals(type) ? table : null);
+        resources.put("partition", null);
+        resources.put("columns", "column".equals(type) ? Collections.singletonList("warmup") : null);
+
+        Map<String, Object> privileges = new HashMap<>();
+        privileges.put("readRequiredPriv", new Privilege[0]);
+        privileges.put("writeRequiredPriv", new Privilege[0]);
+        privileges.put("inputs", null);
+        privileges.put("outputs", null);
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("identity", identity);
+        request.put("resources", resources);
+        request.put("privileges", privileges);
+        return request;
+    }
+}
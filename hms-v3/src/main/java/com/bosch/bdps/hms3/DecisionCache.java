@@ -0,0 +1,210 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Caches authorization decisions for a fixed time. A decision that is read during the
+ * last part of its lifetime is re-evaluated on a background executor while the cached
+ * one keeps being served, so frequently used decisions are renewed before they expire
+ * and callers do not all fall through to OPA at the same moment. Decisions are kept in
+ * a {@link DecisionStore}, on or off the heap.
+ */
+public class DecisionCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DecisionCache.class);
+
+    /**
+     * Evaluates a decision again, called on the refresh executor.
+     */
+    public interface Loader {
+        PolicyDecision load() throws Exception;
+
+        /**
+         * Called on the reading thread before a refresh is handed to the executor. Returns
+         * a loader that no longer refers to objects the caller may change afterwards, e.g.
+         * one with a copy of the request.
+         */
+        default Loader detach() throws Exception {
+            return this;
+        }
+    }
+
+    private final DecisionStore store;
+    private final Executor refresher;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private volatile long ttlMillis;
+    private volatile long refreshAheadMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    /**
+     * @param refreshAhead fraction of the TTL, counted back from expiry, in which a read
+     *                     triggers a background refresh; 0 disables refresh-ahead
+     */
+    public DecisionCache(DecisionStore store, long ttlMillis, double refreshAhead, int threads) {
+        this(store, ttlMillis, refreshAhead, boundedExecutor(threads));
+    }
+
+    DecisionCache(DecisionStore store, long ttlMillis, double refreshAhead, Executor refresher) {
+        this.store = store;
+        this.refresher = refresher;
+        resize(ttlMillis, refreshAhead);
+    }
+
+    private static Executor boundedExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000), runnable -> {
+                    Thread thread = new Thread(runnable, "opa-decision-refresh-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Returns the cached decision, or null if there is none or it has expired. If the
+     * decision is about to expire, it is refreshed in the background using the loader.
+     */
+    public Boolean get(String key, Loader loader) {
+        long entry = store.get(key);
+        long now = System.currentTimeMillis();
+        if (entry == DecisionStore.NONE || DecisionStore.expiresAt(entry) <= now) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (DecisionStore.expiresAt(entry) - now <= refreshAheadMillis && refreshing.add(key)) {
+            scheduleRefresh(key, loader);
+        }
+        return DecisionStore.decision(entry);
+    }
+
+    private void scheduleRefresh(String key, Loader loader) {
+        Loader detached;
+        try {
+            detached = loader.detach();
+        } catch (Exception e) {
+            refreshFailures.increment();
+            refreshing.remove(key);
+            LOG.debug("Failed to refresh cached decision {}: {}", key, e.getMessage());
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    put(key, detached.load());
+                    refreshes.increment();
+                } catch (Exception e) {
+                    // The cached decision stays valid until it expires, the next read tries again.
+                    refreshFailures.increment();
+                    LOG.debug("Failed to refresh cached decision {}: {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * Returns whether a decision is cached and not expired, without counting a hit or miss.
+     */
+    public boolean isCached(String key) {
+        long entry = store.get(key);
+        return entry != DecisionStore.NONE && DecisionStore.expiresAt(entry) > System.currentTimeMillis();
+    }
+
+    public void put(String key, boolean decision) {
+        store.put(key, DecisionStore.entry(decision, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Caches a decision for the lifetime its policy asked for. A decision that must not be
+     * shared beyond its metastore call replaces the cached one with an expired entry.
+     */
+    public void put(String key, PolicyDecision decision) {
+        long now = System.currentTimeMillis();
+        long lifetime = !decision.isShared() ? 0L
+                : decision.getTtlMillis() == PolicyDecision.DEFAULT_TTL ? ttlMillis : decision.getTtlMillis();
+        store.put(key, DecisionStore.entry(decision.isAllowed(), now + lifetime));
+    }
+
+    public void invalidateAll() {
+        store.clear();
+    }
+
+    /**
+     * Removes the decisions whose key matches, see {@link DecisionStore#removeIf(Predicate)}.
+     *
+     * @return the number of removed decisions, or -1 if the store removed all of them
+     */
+    public int invalidate(Predicate<String> key) {
+        return store.removeIf(key);
+    }
+
+    /**
+     * Changes TTL and refresh-ahead window at runtime. Cached decisions keep their expiry time.
+     */
+    public void resize(long ttlMillis, double refreshAhead) {
+        this.ttlMillis = ttlMillis;
+        this.refreshAheadMillis = (long) (ttlMillis * Math.max(0.0, Math.min(1.0, refreshAhead)));
+    }
+
+    public DecisionStore getStore() {
+        return store;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    public long getRefreshFailureCount() {
+        return refreshFailures.sum();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates the independent decisions of one metastore call at the same time instead of
+ * one after another. At most {@code parallelism} decisions of a call are in flight; the
+ * first deny cancels the rest, as the call fails anyway.
+ * <p>
+ * Decisions block on OPA, so on JDK 21 and later they can run on virtual threads, which
+ * costs no platform thread per request in flight. Otherwise, or if configured, they run
+ * on a fixed pool of daemon threads.
+ */
+public class DecisionFanOut {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DecisionFanOut.class);
+
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private volatile int parallelism;
+
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    /**
+     * @param mode        {@code virtual}, {@code platform} or {@code auto} for virtual threads where available
+     * @param threads     size of the pool of platform threads
+     * @param parallelism decisions of one call evaluated at the same time
+     */
+    public DecisionFanOut(String mode, int threads, int parallelism) {
+        ExecutorService virtual = "platform".equalsIgnoreCase(mode) ? null : newVirtualThreadExecutor();
+        if (virtual == null && "virtual".equalsIgnoreCase(mode)) {
+            LOG.warn("Virtual threads require JDK 21 or later, evaluating decisions on platform threads");
+        }
+        this.executor = virtual != null ? virtual : platformExecutor(threads);
+        this.virtualThreads = virtual != null;
+        this.parallelism = parallelism;
+    }
+
+    // Looked up reflectively, as the authorizer is built for Java 8.
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService platformExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "opa-fanout-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Changes the parallelism of a call and the number of platform threads at runtime.
+     */
+    public void update(int parallelism, int threads) {
+        this.parallelism = parallelism;
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            if (threads > pool.getMaximumPoolSize()) {
+                pool.setMaximumPoolSize(threads);
+                pool.setCorePoolSize(threads);
+            } else {
+                pool.setCorePoolSize(threads);
+                pool.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the decisions and returns them by key. Decisions that failed, or were
+     * cancelled after a deny, are missing from the result. A single decision is evaluated
+     * on the calling thread.
+     */
+    public Map<String, Boolean> evaluate(Map<String, Callable<Boolean>> decisions) throws InterruptedException {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        if (decisions.size() == 1) {
+            Map.Entry<String, Callable<Boolean>> decision = decisions.entrySet().iterator().next();
+            try {
+                results.put(decision.getKey(), decision.getValue().call());
+                evaluated.increment();
+            } catch (Exception e) {
+                LOG.debug("Decision {} failed: {}", decision.getKey(), e.getMessage());
+            }
+            return results;
+        }
+
+        CompletionService<Boolean> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<Boolean>, String> running = new HashMap<>();
+        Iterator<Map.Entry<String, Callable<Boolean>>> pending = decisions.entrySet().iterator();
+        int limit = Math.max(1, parallelism);
+        try {
+            while (running.size() < limit && pending.hasNext()) {
+                Map.Entry<String, Callable<Boolean>> decision = pending.next();
+                running.put(completion.submit(decision.getValue()), decision.getKey());
+            }
+            while (!running.isEmpty()) {
+                Future<Boolean> done = completion.take();
+                String key = running.remove(done);
+                try {
+                    boolean allowed = done.get();
+                    evaluated.increment();
+                    results.put(key, allowed);
+                    if (!allowed) {
+                        int skipped = running.size();
+                        while (pending.hasNext()) {
+                            pending.next();
+                            skipped++;
+                        }
+                        cancelled.add(skipped);
+                        LOG.debug("Decision {} denied, cancelling {} outstanding decisions", key, skipped);
+                        return results;
+                    }
+                } catch (ExecutionException e) {
+                    LOG.debug("Decision {} failed: {}", key, e.getCause().getMessage());
+                }
+                if (pending.hasNext()) {
+                    Map.Entry<String, Callable<Boolean>> decision = pending.next();
+                    running.put(completion.submit(decision.getValue()), decision.getKey());
+                }
+            }
+            return results;
+        } finally {
+            for (Future<Boolean> future : running.keySet()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public long getEvaluatedCount() {
+        return evaluated.sum();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.sum();
+    }
+}
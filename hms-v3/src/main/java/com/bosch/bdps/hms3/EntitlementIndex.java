@@ -0,0 +1,184 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.hadoop.hive.ql.security.authorization.Privilege;
+import org.apache.hadoop.hive.ql.security.authorization.PrivilegeType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable index of ACL-style grants (database -> table -> principal -> privileges),
+ * built from an entitlement document served by OPA's data API:
+ *
+ * <pre>
+ * {
+ *   "grants": [
+ *     {"group": "analysts", "database": "sales", "table": "orders", "privileges": ["SELECT"]},
+ *     {"user": "etl", "database": "sales", "table": "*", "privileges": ["ALL"]}
+ *   ]
+ * }
+ * </pre>
+ *
+ * A grant on table {@code *} applies to the database itself and all of its tables.
+ * The index can only grant access; whatever it does not cover is left to OPA.
+ */
+public final class EntitlementIndex {
+
+    public static final EntitlementIndex EMPTY = new EntitlementIndex(Collections.emptyMap(), 0);
+
+    private static final String ANY_TABLE = "*";
+    private static final long ALL_PRIVILEGES = allPrivileges();
+
+    // database -> table -> principal ("u:<name>" or "g:<name>") -> privilege bitset
+    private final Map<String, Map<String, Map<String, Long>>> grants;
+    private final int size;
+
+    private EntitlementIndex(Map<String, Map<String, Map<String, Long>>> grants, int size) {
+        this.grants = grants;
+        this.size = size;
+    }
+
+    public static EntitlementIndex parse(JsonNode document) {
+        Map<String, Map<String, Map<String, Long>>> grants = new HashMap<>();
+        int size = 0;
+        JsonNode entries = document == null ? null : document.get("grants");
+        if (entries == null || !entries.isArray()) {
+            return EMPTY;
+        }
+        for (JsonNode entry : entries) {
+            String principal = principalKey(entry);
+            String database = text(entry, "database");
+            if (principal == null || database == null) {
+                continue;
+            }
+            String table = text(entry, "table");
+            long privileges = 0L;
+            for (JsonNode privilege : entry.path("privileges")) {
+                privileges |= bit(privilege.asText());
+            }
+            grants.computeIfAbsent(database.toLowerCase(Locale.ROOT), db -> new HashMap<>())
+                    .computeIfAbsent(table == null ? ANY_TABLE : table.toLowerCase(Locale.ROOT), t -> new HashMap<>())
+                    .merge(principal, privileges, (a, b) -> a | b);
+            size++;
+        }
+        return new EntitlementIndex(grants, size);
+    }
+
+    /**
+     * Checks whether the user, directly or via one of its groups, holds all required privileges.
+     *
+     * @param table the table name, or null for a database-level check
+     */
+    public boolean allows(String database, String table, String user, Collection<String> groups,
+                          Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) {
+        if (database == null || user == null) {
+            return false;
+        }
+        Map<String, Map<String, Long>> tables = grants.get(database.toLowerCase(Locale.ROOT));
+        if (tables == null) {
+            return false;
+        }
+        long read = mask(readRequiredPriv);
+        long write = mask(writeRequiredPriv);
+        // Checks without (known) privileges are left to the policy.
+        if (read < 0L || write < 0L || (read | write) == 0L) {
+            return false;
+        }
+        long required = read | write;
+        long held = held(tables.get(ANY_TABLE), user, groups);
+        if (table != null) {
+            held |= held(tables.get(table.toLowerCase(Locale.ROOT)), user, groups);
+        }
+        return (held & required) == required;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static long held(Map<String, Long> principals, String user, Collection<String> groups) {
+        if (principals == null) {
+            return 0L;
+        }
+        long held = principals.getOrDefault("u:" + user, 0L);
+        if (groups != null) {
+            for (String group : groups) {
+                held |= principals.getOrDefault("g:" + group, 0L);
+            }
+        }
+        return held;
+    }
+
+    // Returns -1 if a privilege cannot be expressed in the index.
+    private static long mask(Privilege[] privileges) {
+        long mask = 0L;
+        if (privileges == null) {
+            return mask;
+        }
+        for (Privilege privilege : privileges) {
+            PrivilegeType type = privilege == null ? null : privilege.getPriv();
+            if (type == null || type == PrivilegeType.UNKNOWN) {
+                return -1L;
+            }
+            mask |= 1L << type.ordinal();
+        }
+        return mask;
+    }
+
+    private static long bit(String name) {
+        PrivilegeType type;
+        try {
+            type = PrivilegeType.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return 0L;
+        }
+        if (type == PrivilegeType.ALL) {
+            return ALL_PRIVILEGES;
+        }
+        return type == PrivilegeType.UNKNOWN ? 0L : 1L << type.ordinal();
+    }
+
+    private static long allPrivileges() {
+        long mask = 0L;
+        for (PrivilegeType type : PrivilegeType.values()) {
+            if (type != PrivilegeType.UNKNOWN) {
+                mask |= 1L << type.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    private static String principalKey(JsonNode entry) {
+        String user = text(entry, "user");
+        if (user != null) {
+            return "u:" + user;
+        }
+        String group = text(entry, "group");
+        return group == null ? null : "g:" + group;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || !value.isTextual() ? null : value.asText();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import java.util.function.Predicate;
+
+/**
+ * Keeps cached decisions in a striped LRU map on the heap.
+ */
+public class HeapDecisionStore implements DecisionStore {
+
+    private final StripedLruMap<Long> entries;
+
+    public HeapDecisionStore(int maxEntries) {
+        this.entries = new StripedLruMap<>(maxEntries);
+    }
+
+    @Override
+    public long get(String key) {
+        Long entry = entries.get(key);
+        return entry == null ? NONE : entry;
+    }
+
+    @Override
+    public void put(String key, long entry) {
+        entries.put(key, entry);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public int removeIf(Predicate<String> key) {
+        return entries.removeIf(key);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void resize(int maxEntries) {
+        entries.resize(maxEntries);
+    }
+}
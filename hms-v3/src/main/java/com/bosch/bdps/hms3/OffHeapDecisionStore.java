@@ -0,0 +1,195 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Predicate;
+
+/**
+ * Keeps cached decisions in direct byte buffers, outside of the Java heap, so millions
+ * of entries add no work for the garbage collector. Keys are stored as 128-bit SHA-256
+ * prefixes in open-addressed tables with linear probing, split into independently locked
+ * segments. The memory is allocated up front from a byte budget; when the probe window
+ * of a key is full, the entry expiring first is overwritten.
+ */
+public class OffHeapDecisionStore implements DecisionStore {
+
+    static final int SLOT_BYTES = 24;
+    static final int SEGMENTS = 64;
+    static final int MAX_PROBES = 8;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int slotsPerSegment;
+
+    public OffHeapDecisionStore(long budgetBytes) {
+        long slots = Math.max(MAX_PROBES, budgetBytes / SLOT_BYTES / SEGMENTS);
+        if (slots * SLOT_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Off-heap decision store budget is too large: " + budgetBytes);
+        }
+        this.slotsPerSegment = (int) slots;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(slotsPerSegment);
+        }
+    }
+
+    @Override
+    public long get(String key) {
+        byte[] hash = hash(key);
+        long high = getLong(hash, 0);
+        long low = getLong(hash, 8);
+        return segment(high).get(high, low, start(low));
+    }
+
+    @Override
+    public void put(String key, long entry) {
+        byte[] hash = hash(key);
+        long high = getLong(hash, 0);
+        long low = getLong(hash, 8);
+        segment(high).put(high, low, start(low), entry);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public int removeIf(Predicate<String> key) {
+        // Only hashes of the keys are kept, so no entry can be matched.
+        clear();
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void resize(int maxEntries) {
+        // Sized by the byte budget given at construction.
+    }
+
+    public int getCapacity() {
+        return SEGMENTS * slotsPerSegment;
+    }
+
+    private Segment segment(long high) {
+        return segments[(int) (high >>> 58)];
+    }
+
+    private int start(long low) {
+        return (int) ((low & Long.MAX_VALUE) % slotsPerSegment);
+    }
+
+    private static byte[] hash(String key) {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        return digest.digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0L;
+        for (int i = offset; i < offset + 8; i++) {
+            value = value << 8 | (bytes[i] & 0xFFL);
+        }
+        return value;
+    }
+
+    // Slot layout: high and low 64 bits of the key hash, then the entry; an entry of 0 is empty.
+    private static final class Segment {
+        private final ByteBuffer slots;
+        private final int capacity;
+        private int size;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        }
+
+        synchronized long get(long high, long low, int start) {
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int offset = ((start + probe) % capacity) * SLOT_BYTES;
+                long entry = slots.getLong(offset + 16);
+                if (entry == NONE) {
+                    return NONE;
+                }
+                if (slots.getLong(offset) == high && slots.getLong(offset + 8) == low) {
+                    return entry;
+                }
+            }
+            return NONE;
+        }
+
+        synchronized void put(long high, long low, int start, long entry) {
+            int victim = -1;
+            long victimExpiresAt = Long.MAX_VALUE;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int offset = ((start + probe) % capacity) * SLOT_BYTES;
+                long existing = slots.getLong(offset + 16);
+                if (existing == NONE) {
+                    size++;
+                    write(offset, high, low, entry);
+                    return;
+                }
+                if (slots.getLong(offset) == high && slots.getLong(offset + 8) == low) {
+                    slots.putLong(offset + 16, entry);
+                    return;
+                }
+                if (DecisionStore.expiresAt(existing) < victimExpiresAt) {
+                    victim = offset;
+                    victimExpiresAt = DecisionStore.expiresAt(existing);
+                }
+            }
+            write(victim, high, low, entry);
+        }
+
+        private void write(int offset, long high, long low, long entry) {
+            slots.putLong(offset, high);
+            slots.putLong(offset + 8, low);
+            slots.putLong(offset + 16, entry);
+        }
+
+        synchronized void clear() {
+            for (int offset = 0; offset < capacity * SLOT_BYTES; offset += 8) {
+                slots.putLong(offset, 0L);
+            }
+            size = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+    }
+}
@@ -1,27 +1,54 @@
-/*
- * Copyright 2025 the Hive Metastore Opa Authorizer Authors
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package com.bosch.bdps.hms3;
-
-import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.hive.ql.metadata.HiveException;
-import org.apache.hadoop.hive.ql.security.authorization.AuthorizationPreEventListener;
-
-public class OpaAuthorizationPreEventListener extends AuthorizationPreEventListener {
-    public OpaAuthorizationPreEventListener(Configuration config) throws HiveException {
-        super(config);
-    }
-}
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.metastore.api.InvalidOperationException;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.hadoop.hive.metastore.events.PreEventContext;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.security.authorization.AuthorizationPreEventListener;
+
+public class OpaAuthorizationPreEventListener extends AuthorizationPreEventListener {
+    // Created when the metastore starts, before it serves any call, so the authorizer is
+    // warmed up here rather than by the providers of the first calls.
+    public OpaAuthorizationPreEventListener(Configuration config) throws HiveException {
+        super(config);
+        OpaBasedAuthorizationProvider.warmUp(config);
+    }
+
+    // Binds an authorization scope to the metastore call. If the authorizers deferred
+    // checks to one combined query and one of them was denied, they run a second time,
+    // answered from the scope, so that the call fails the way HMS expects.
+    @Override
+    public void onEvent(PreEventContext context) throws MetaException, NoSuchObjectException, InvalidOperationException {
+        AuthorizationScope scope = AuthorizationScope.open();
+        if (scope == null) {
+            super.onEvent(context);
+            return;
+        }
+        try {
+            super.onEvent(context);
+            if (!scope.resolve()) {
+                super.onEvent(context);
+            }
+        } finally {
+            scope.close();
+        }
+    }
+}
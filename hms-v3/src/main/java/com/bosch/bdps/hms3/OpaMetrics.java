@@ -0,0 +1,106 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-rule latency histograms combining client-side timings with the timers OPA
+ * reports for a query when asked with {@code ?metrics=true}. The server-side timers
+ * tell how much of a slow decision was spent decoding the input and evaluating the
+ * rule; whatever is left of the round trip is network and HTTP handling.
+ */
+public class OpaMetrics {
+
+    public static final String ROUND_TRIP = "round_trip";
+    public static final String SERIALIZE = "serialize";
+    public static final String PARSE = "parse";
+    public static final String NETWORK = "network";
+    public static final String SERVER_HANDLER = "server_handler";
+    public static final String SERVER_DECODE = "server_decode";
+    public static final String SERVER_EVAL = "server_eval";
+    public static final String SERVER_ENCODE = "server_encode";
+
+    private volatile double sampleRate;
+    private final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> rules = new ConcurrentHashMap<>();
+
+    /**
+     * @param sampleRate fraction of requests to measure, 1.0 for every request
+     */
+    public OpaMetrics(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Decides whether the next request is measured.
+     */
+    public boolean sample() {
+        return sampleRate >= 1.0 || (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Records the timings of one request.
+     *
+     * @param serverMetrics the "metrics" object of OPA's response, may be null
+     */
+    public void record(String rule, long serializeNanos, long roundTripNanos, long parseNanos, JsonNode serverMetrics) {
+        histogram(rule, SERIALIZE).record(serializeNanos);
+        histogram(rule, ROUND_TRIP).record(roundTripNanos);
+        histogram(rule, PARSE).record(parseNanos);
+        if (serverMetrics == null || !serverMetrics.has("timer_server_handler_ns")) {
+            return;
+        }
+        long handler = serverMetrics.path("timer_server_handler_ns").asLong();
+        long decode = serverMetrics.path("timer_rego_input_parse_ns").asLong();
+        long eval = serverMetrics.path("timer_rego_query_parse_ns").asLong()
+                + serverMetrics.path("timer_rego_query_compile_ns").asLong()
+                + serverMetrics.path("timer_rego_query_eval_ns").asLong();
+        histogram(rule, SERVER_HANDLER).record(handler);
+        histogram(rule, SERVER_DECODE).record(decode);
+        histogram(rule, SERVER_EVAL).record(eval);
+        // OPA has no timer for writing the response, it is the rest of the handler time.
+        histogram(rule, SERVER_ENCODE).record(handler - decode - eval);
+        histogram(rule, NETWORK).record(roundTripNanos - handler);
+    }
+
+    public LatencyHistogram histogram(String rule, String timer) {
+        return rules.computeIfAbsent(rule, r -> new ConcurrentHashMap<>())
+                .computeIfAbsent(timer, t -> new LatencyHistogram());
+    }
+
+    /**
+     * Returns rule -> timer -> histogram, sorted by name.
+     */
+    public Map<String, Map<String, LatencyHistogram>> snapshot() {
+        Map<String, Map<String, LatencyHistogram>> snapshot = new TreeMap<>();
+        for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> rule : rules.entrySet()) {
+            snapshot.put(rule.getKey(), Collections.unmodifiableMap(new TreeMap<>(rule.getValue())));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A policy rule partially evaluated by OPA's Compile API for a known identity. What is
+ * left over is a disjunction of queries, each a conjunction of expressions over the
+ * still unknown parts of the input. Only a small subset of Rego is translated:
+ * comparisons ({@code =}, {@code ==}, {@code !=}) between references into {@code input}
+ * and constants, plain references, and their negations. Anything else makes
+ * {@link #translate(JsonNode)} return null, and the caller has to ask OPA.
+ */
+public final class ResidualPolicy {
+
+    private static final ResidualPolicy NEVER = new ResidualPolicy(Collections.emptyList());
+
+    private final List<List<Expression>> queries;
+
+    private ResidualPolicy(List<List<Expression>> queries) {
+        this.queries = queries;
+    }
+
+    /**
+     * Translates the {@code result} of a Compile API response.
+     *
+     * @return the predicate, or null if the residual uses unsupported constructs
+     */
+    public static ResidualPolicy translate(JsonNode result) {
+        if (result == null || result.isNull()) {
+            return null;
+        }
+        // Support modules (e.g. partially evaluated helper rules) are not translated.
+        JsonNode support = result.get("support");
+        if (support != null && support.size() > 0) {
+            return null;
+        }
+        JsonNode queries = result.get("queries");
+        if (queries == null || queries.isNull() || queries.size() == 0) {
+            // No query can ever be satisfied for this identity.
+            return NEVER;
+        }
+        List<List<Expression>> translated = new ArrayList<>();
+        for (JsonNode query : queries) {
+            List<Expression> expressions = new ArrayList<>();
+            for (JsonNode expr : query) {
+                Expression expression = Expression.translate(expr);
+                if (expression == null) {
+                    return null;
+                }
+                expressions.add(expression);
+            }
+            translated.add(expressions);
+        }
+        return new ResidualPolicy(translated);
+    }
+
+    /**
+     * Combines two residuals of the same rule into one that is satisfied if either is.
+     *
+     * @return the disjunction, or null if either residual could not be translated
+     */
+    public static ResidualPolicy anyOf(ResidualPolicy first, ResidualPolicy second) {
+        if (first == null || second == null) {
+            return null;
+        }
+        List<List<Expression>> queries = new ArrayList<>(first.queries);
+        queries.addAll(second.queries);
+        return queries.isEmpty() ? NEVER : new ResidualPolicy(queries);
+    }
+
+    /**
+     * Evaluates the residual against the full input document.
+     */
+    public boolean test(JsonNode input) {
+        for (List<Expression> query : queries) {
+            boolean satisfied = true;
+            for (Expression expression : query) {
+                if (!expression.test(input)) {
+                    satisfied = false;
+                    break;
+                }
+            }
+            if (satisfied) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Expression {
+        private final String operator;
+        private final List<Term> operands;
+        private final boolean negated;
+
+        private Expression(String operator, List<Term> operands, boolean negated) {
+            this.operator = operator;
+            this.operands = operands;
+            this.negated = negated;
+        }
+
+        static Expression translate(JsonNode expr) {
+            if (expr.has("with")) {
+                return null;
+            }
+            boolean negated = expr.path("negated").asBoolean(false);
+            JsonNode terms = expr.get("terms");
+            if (terms == null) {
+                return null;
+            }
+            if (terms.isObject()) {
+                Term term = Term.translate(terms);
+                return term == null ? null : new Expression(null, Collections.singletonList(term), negated);
+            }
+            if (!terms.isArray() || terms.size() != 3) {
+                return null;
+            }
+            String operator = operatorName(terms.get(0));
+            if (!"eq".equals(operator) && !"equal".equals(operator) && !"neq".equals(operator)) {
+                return null;
+            }
+            Term left = Term.translate(terms.get(1));
+            Term right = Term.translate(terms.get(2));
+            if (left == null || right == null) {
+                return null;
+            }
+            List<Term> operands = new ArrayList<>();
+            operands.add(left);
+            operands.add(right);
+            return new Expression(operator, operands, negated);
+        }
+
+        boolean test(JsonNode input) {
+            return negated != evaluate(input);
+        }
+
+        private boolean evaluate(JsonNode input) {
+            JsonNode first = operands.get(0).resolve(input);
+            if (operator == null) {
+                // A single term is true if it is defined and not false.
+                return first != null && !first.isMissingNode() && !(first.isBoolean() && !first.asBoolean());
+            }
+            JsonNode second = operands.get(1).resolve(input);
+            // Undefined references make the whole expression undefined, i.e. false.
+            if (first == null || second == null || first.isMissingNode() || second.isMissingNode()) {
+                return false;
+            }
+            boolean equal = valueEquals(first, second);
+            return "neq".equals(operator) != equal;
+        }
+
+        private static String operatorName(JsonNode term) {
+            if (!"ref".equals(term.path("type").asText())) {
+                return null;
+            }
+            JsonNode path = term.get("value");
+            if (path == null || path.size() != 1 || !"var".equals(path.get(0).path("type").asText())) {
+                return null;
+            }
+            return path.get(0).path("value").asText();
+        }
+
+        private static boolean valueEquals(JsonNode a, JsonNode b) {
+            if (a.isNumber() && b.isNumber()) {
+                return a.decimalValue().compareTo(b.decimalValue()) == 0;
+            }
+            return a.equals(b);
+        }
+    }
+
+    private static final class Term {
+        private final JsonNode constant;
+        private final List<JsonNode> path;
+
+        private Term(JsonNode constant, List<JsonNode> path) {
+            this.constant = constant;
+            this.path = path;
+        }
+
+        static Term translate(JsonNode term) {
+            String type = term.path("type").asText();
+            switch (type) {
+                case "null":
+                case "boolean":
+                case "number":
+                case "string":
+                    return new Term(term.get("value"), null);
+                case "ref":
+                    return translateRef(term.get("value"));
+                default:
+                    return null;
+            }
+        }
+
+        private static Term translateRef(JsonNode ref) {
+            if (ref == null || ref.size() < 1) {
+                return null;
+            }
+            JsonNode head = ref.get(0);
+            if (!"var".equals(head.path("type").asText()) || !"input".equals(head.path("value").asText())) {
+                return null;
+            }
+            List<JsonNode> path = new ArrayList<>();
+            for (int i = 1; i < ref.size(); i++) {
+                JsonNode element = ref.get(i);
+                String type = element.path("type").asText();
+                if (!"string".equals(type) && !"number".equals(type)) {
+                    // Variables inside a reference mean iteration, which is not supported.
+                    return null;
+                }
+                path.add(element.get("value"));
+            }
+            return new Term(null, path);
+        }
+
+        JsonNode resolve(JsonNode input) {
+            if (path == null) {
+                return constant;
+            }
+            JsonNode current = input;
+            for (JsonNode element : path) {
+                if (current == null) {
+                    return null;
+                }
+                current = element.isNumber() ? current.get(element.asInt()) : current.get(element.asText());
+            }
+            // JSON null is a value in Rego, a missing key is not.
+            return current;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retries OPA requests that failed for a transient reason, i.e. an I/O error or a 429,
+ * 502, 503 or 504 response. Waits between attempts grow exponentially and are jittered,
+ * so threads failing at the same time do not retry at the same time.
+ * <p>
+ * Retries are paid from a budget shared by all threads: every request adds a fraction of
+ * a retry to it, up to a reserve for bursts, and every retry takes one. While OPA is
+ * down, retries are hence limited to that fraction of requests instead of multiplying the
+ * load. Every attempt is given the time left until the deadline of the request as its
+ * timeout, and no retry is started that would end after the deadline.
+ */
+public class RetryPolicy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetryPolicy.class);
+
+    // The budget is kept in thousandths of a retry.
+    private static final long SCALE = 1000;
+
+    private volatile int maxRetries;
+    private volatile long backoffMillis;
+    private volatile long maxBackoffMillis;
+    private volatile long deadlineMillis;
+    private volatile long deposit;
+    private volatile long reserve;
+
+    private final AtomicLong balance = new AtomicLong();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * @param maxRetries       retries of one request
+     * @param backoffMillis    upper bound of the first wait, doubled for every further retry
+     * @param maxBackoffMillis upper bound of any wait
+     * @param deadlineMillis   time from the first attempt after which attempts time out and no retry
+     *                         starts; 0 for a single attempt without a timeout
+     * @param budgetRatio      retries earned per request, e.g. 0.1 for one retry per ten requests
+     * @param budgetReserve    retries that can be spent at once, available from the start
+     */
+    public RetryPolicy(int maxRetries, long backoffMillis, long maxBackoffMillis, long deadlineMillis,
+                       double budgetRatio, int budgetReserve) {
+        update(maxRetries, backoffMillis, maxBackoffMillis, deadlineMillis, budgetRatio, budgetReserve);
+        balance.set(reserve);
+    }
+
+    public void update(int maxRetries, long backoffMillis, long maxBackoffMillis, long deadlineMillis,
+                       double budgetRatio, int budgetReserve) {
+        this.maxRetries = maxRetries;
+        this.backoffMillis = Math.max(1, backoffMillis);
+        this.maxBackoffMillis = Math.max(this.backoffMillis, maxBackoffMillis);
+        this.deadlineMillis = deadlineMillis;
+        this.deposit = (long) (budgetRatio * SCALE);
+        this.reserve = (long) budgetReserve * SCALE;
+    }
+
+    /**
+     * One attempt of a request, which has to give up after the given time.
+     */
+    public interface Attempt<T> {
+        /**
+         * @param timeoutMillis time the attempt may wait to connect or for each read, 0 for no limit
+         */
+        T call(int timeoutMillis) throws Exception;
+    }
+
+    public <T> T execute(Callable<T> request) throws Exception {
+        return execute(timeoutMillis -> request.call());
+    }
+
+    public <T> T execute(Attempt<T> request) throws Exception {
+        long deadlineMillis = this.deadlineMillis;
+        long deadline = System.nanoTime() + deadlineMillis * 1_000_000L;
+        earn();
+        for (int retry = 0; ; retry++) {
+            try {
+                return request.call(deadlineMillis <= 0 ? 0 : timeoutMillis(deadline));
+            } catch (Exception e) {
+                if (retry >= maxRetries || !isTransient(e)) {
+                    throw e;
+                }
+                long backoff = backoff(retry);
+                if (System.nanoTime() + backoff * 1_000_000L >= deadline) {
+                    LOG.debug("Not retrying OPA request, deadline would be exceeded: {}", e.getMessage());
+                    throw e;
+                }
+                if (!spend()) {
+                    exhausted.increment();
+                    LOG.debug("Not retrying OPA request, retry budget is exhausted: {}", e.getMessage());
+                    throw e;
+                }
+                LOG.debug("Retrying OPA request in {} ms: {}", backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                retries.increment();
+            }
+        }
+    }
+
+    // Time left until the deadline, at least 1 ms, as 0 would mean no timeout at all.
+    private static int timeoutMillis(long deadline) {
+        long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, left));
+    }
+
+    static boolean isTransient(Exception e) {
+        // A rejected certificate will be rejected again.
+        return (e instanceof IOException && !(e instanceof SSLHandshakeException)) || e instanceof TransientStatusException;
+    }
+
+    static boolean isTransientStatus(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    // Full jitter: uniformly distributed up to the exponential bound.
+    long backoff(int retry) {
+        long bound = Math.min(maxBackoffMillis, backoffMillis << Math.min(retry, 30));
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private void earn() {
+        long limit = reserve;
+        long amount = deposit;
+        balance.getAndUpdate(current -> current >= limit ? current : Math.min(limit, current + amount));
+    }
+
+    private boolean spend() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    public long getBudgetExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    /**
+     * OPA answered with a status that is worth retrying, e.g. 503 while it is loading bundles.
+     */
+    public static class TransientStatusException extends RuntimeException {
+        public TransientStatusException(String message) {
+            super(message);
+        }
+    }
+}
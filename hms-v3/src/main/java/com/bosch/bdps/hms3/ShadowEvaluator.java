@@ -0,0 +1,166 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Re-evaluates a sample of authorization requests against a candidate policy, after
+ * the real decision has been made. Shadow requests run on a small bounded executor;
+ * if it is saturated, the sample is dropped instead of slowing down the caller.
+ * Latency and decisions differing from the primary policy are recorded per rule.
+ */
+public class ShadowEvaluator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShadowEvaluator.class);
+
+    private final OpaBasedAuthorizationProvider.OpaHttpClient opa;
+    private volatile Map<String, String> policyUrls;
+    private volatile double sampleRate;
+    private final Executor executor;
+    private final OpaMetrics latency = new OpaMetrics(1.0);
+
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param policyUrls policy type -> candidate policy path
+     */
+    public ShadowEvaluator(OpaBasedAuthorizationProvider.OpaHttpClient opa, Map<String, String> policyUrls,
+                           double sampleRate, int threads, int queueSize) {
+        this(opa, policyUrls, sampleRate, boundedExecutor(threads, queueSize));
+    }
+
+    ShadowEvaluator(OpaBasedAuthorizationProvider.OpaHttpClient opa, Map<String, String> policyUrls,
+                    double sampleRate, Executor executor) {
+        this.opa = opa;
+        this.policyUrls = policyUrls;
+        this.sampleRate = sampleRate;
+        this.executor = executor;
+    }
+
+    OpaBasedAuthorizationProvider.OpaHttpClient getClient() {
+        return opa;
+    }
+
+    private static Executor boundedExecutor(int threads, int queueSize) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "opa-shadow-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Schedules the shadow evaluation of a request, if it is sampled. Never blocks. A
+     * sampled request is copied first, as the metastore may change its objects once the
+     * caller returns.
+     */
+    public void submit(String type, Map<String, Object> input, boolean primaryDecision) {
+        String path = policyUrls.get(type);
+        if (path == null || (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        Map<String, Object> copy;
+        try {
+            copy = OpaBasedAuthorizationProvider.OpaHttpClient.copyOf(input);
+        } catch (IllegalArgumentException e) {
+            errors.increment();
+            LOG.debug("Shadow evaluation of {} failed: {}", path, e.getMessage());
+            return;
+        }
+        try {
+            executor.execute(() -> evaluate(path, copy, primaryDecision));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    private void evaluate(String path, Map<String, Object> input, boolean primaryDecision) {
+        long start = System.nanoTime();
+        boolean shadowDecision;
+        try {
+            shadowDecision = opa.check(path, input);
+        } catch (Exception e) {
+            errors.increment();
+            LOG.debug("Shadow evaluation of {} failed: {}", path, e.getMessage());
+            return;
+        }
+        latency.histogram(path, OpaMetrics.ROUND_TRIP).record(System.nanoTime() - start);
+        evaluated.increment();
+        if (shadowDecision != primaryDecision) {
+            mismatches.increment();
+            LOG.info("Shadow policy {} decided {} where the primary policy decided {} for {} on {}",
+                    path, shadowDecision, primaryDecision, input.get("identity"), input.get("resources"));
+        }
+    }
+
+    /**
+     * Changes candidate policies, sample rate and number of threads at runtime.
+     */
+    public void update(Map<String, String> policyUrls, double sampleRate, int threads) {
+        this.policyUrls = policyUrls;
+        this.sampleRate = sampleRate;
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            if (threads > pool.getMaximumPoolSize()) {
+                pool.setMaximumPoolSize(threads);
+                pool.setCorePoolSize(threads);
+            } else {
+                pool.setCorePoolSize(threads);
+                pool.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    public OpaMetrics getLatency() {
+        return latency;
+    }
+
+    public long getEvaluatedCount() {
+        return evaluated.sum();
+    }
+
+    public long getMismatchCount() {
+        return mismatches.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A size-bounded LRU map split into stripes by key hash. Every stripe is locked on its
+ * own and evicts its least recently used entry, so handler threads looking up different
+ * keys rarely wait for each other. Small maps use a single stripe and are exact LRU.
+ */
+public class StripedLruMap<V> {
+
+    static final int MAX_STRIPES = 16;
+    static final int MIN_ENTRIES_PER_STRIPE = 1024;
+
+    private final Stripe<V>[] stripes;
+    private volatile int maxEntriesPerStripe;
+
+    @SuppressWarnings("unchecked")
+    public StripedLruMap(int maxEntries) {
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, maxEntries / MIN_ENTRIES_PER_STRIPE)));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>(this);
+        }
+        resize(maxEntries);
+    }
+
+    public V get(String key) {
+        Stripe<V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    public void put(String key, V value) {
+        Stripe<V> stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    public void clear() {
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public int removeIf(Predicate<String> key) {
+        int removed = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                for (Iterator<String> keys = stripe.keySet().iterator(); keys.hasNext(); ) {
+                    if (key.test(keys.next())) {
+                        keys.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Changes the capacity. The number of stripes stays, surplus entries are evicted on the next insert.
+     */
+    public void resize(int maxEntries) {
+        this.maxEntriesPerStripe = Math.max(1, (maxEntries + stripes.length - 1) / stripes.length);
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    private Stripe<V> stripe(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe<V> extends LinkedHashMap<String, V> {
+        private final StripedLruMap<V> owner;
+
+        Stripe(StripedLruMap<V> owner) {
+            super(16, 0.75f, true);
+            this.owner = owner;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+            return size() > owner.maxEntriesPerStripe;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TFieldIdEnum;
+import org.apache.thrift.meta_data.FieldMetaData;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes Thrift structs of the metastore API, e.g. Database, Table, Partition and
+ * StorageDescriptor, from their field metadata instead of bean introspection. Fields keep
+ * the names they have as bean properties, so the input of policies has the same shape, but
+ * unset fields and the Thrift helpers ({@code setXxx}, {@code xxxSize}, {@code xxxIterator})
+ * are left out.
+ */
+@SuppressWarnings("rawtypes")
+public class ThriftStructSerializer extends StdSerializer<TBase> {
+
+    // The fields of a struct type, in declaration order, with their names pre-encoded.
+    private static final class Fields {
+        final TFieldIdEnum[] ids;
+        final SerializedString[] names;
+
+        Fields(Map<? extends TFieldIdEnum, FieldMetaData> metaData) {
+            this.ids = metaData.keySet().toArray(new TFieldIdEnum[0]);
+            this.names = new SerializedString[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                names[i] = new SerializedString(ids[i].getFieldName());
+            }
+        }
+    }
+
+    private final ConcurrentMap<Class<?>, Fields> fields = new ConcurrentHashMap<>();
+
+    public ThriftStructSerializer() {
+        super(TBase.class);
+    }
+
+    /**
+     * A module registering the serializer for all Thrift structs.
+     */
+    public static SimpleModule module() {
+        SimpleModule module = new SimpleModule("thrift-structs");
+        module.addSerializer(TBase.class, new ThriftStructSerializer());
+        return module;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void serialize(TBase struct, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        Fields structFields = fields.computeIfAbsent(struct.getClass(),
+                type -> new Fields(FieldMetaData.getStructMetaDataMap((Class<? extends TBase>) type)));
+        gen.writeStartObject(struct);
+        for (int i = 0; i < structFields.ids.length; i++) {
+            TFieldIdEnum id = structFields.ids[i];
+            if (!struct.isSet(id)) {
+                continue;
+            }
+            Object value = struct.getFieldValue(id);
+            gen.writeFieldName(structFields.names[i]);
+            // Names, times and flags make up most fields, write them without a serializer lookup.
+            if (value instanceof String) {
+                gen.writeString((String) value);
+            } else if (value instanceof Integer) {
+                gen.writeNumber((Integer) value);
+            } else if (value instanceof Long) {
+                gen.writeNumber((Long) value);
+            } else if (value instanceof Boolean) {
+                gen.writeBoolean((Boolean) value);
+            } else {
+                provider.defaultSerializeValue(value, gen);
+            }
+        }
+        gen.writeEndObject();
+    }
+}
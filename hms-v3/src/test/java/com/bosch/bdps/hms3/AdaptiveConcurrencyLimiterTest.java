@@ -0,0 +1,107 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    public void testRejectsWhenLimitReached() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10);
+
+        assertTrue(limiter.acquire(0));
+        assertTrue(limiter.acquire(0));
+        assertFalse(limiter.acquire(10));
+        assertEquals(1, limiter.getRejectedCount());
+
+        limiter.release(FAST, false);
+        assertTrue(limiter.acquire(0));
+    }
+
+    @Test
+    public void testWaitingCallerGetsReleasedSlot() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+        assertTrue(limiter.acquire(0));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            limiter.release(FAST, false);
+        });
+        releaser.start();
+
+        assertTrue(limiter.acquire(5000));
+        releaser.join();
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyIsStable() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 100);
+
+        for (int round = 0; round < 20; round++) {
+            int slots = limiter.getLimit();
+            for (int i = 0; i < slots; i++) {
+                assertTrue(limiter.acquire(0));
+            }
+            for (int i = 0; i < slots; i++) {
+                limiter.release(FAST, false);
+            }
+        }
+
+        assertTrue(limiter.getLimit() > 4);
+    }
+
+    @Test
+    public void testLimitShrinksWhenLatencyRises() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100);
+        assertTrue(limiter.acquire(0));
+        limiter.release(FAST, false);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.acquire(0));
+            limiter.release(SLOW, false);
+        }
+
+        assertTrue(limiter.getLimit() < 50);
+    }
+
+    @Test
+    public void testFailuresBackOff() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 100);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire(0));
+            limiter.release(FAST, true);
+        }
+
+        assertTrue(limiter.getLimit() < 10);
+        assertEquals(0, limiter.getInFlight());
+    }
+}
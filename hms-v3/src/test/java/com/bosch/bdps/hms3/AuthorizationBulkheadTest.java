@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuthorizationBulkheadTest {
+
+    private AuthorizationBulkhead bulkhead(int tableLimit, int partitionLimit) {
+        Map<String, Integer> limits = new HashMap<>();
+        limits.put("table", tableLimit);
+        limits.put("partition", partitionLimit);
+        return new AuthorizationBulkhead(limits);
+    }
+
+    @Test
+    public void testPolicyTypesAreIsolated() throws InterruptedException {
+        AuthorizationBulkhead bulkhead = bulkhead(2, 2);
+
+        assertTrue(bulkhead.acquire("partition", "batch", 0));
+        assertTrue(bulkhead.acquire("partition", "batch", 0));
+        assertFalse(bulkhead.acquire("partition", "batch", 0));
+
+        assertTrue(bulkhead.acquire("table", "batch", 0));
+        assertEquals(2, bulkhead.getInFlight("partition"));
+        assertEquals(1, bulkhead.getInFlight("table"));
+    }
+
+    @Test
+    public void testPrincipalCannotExceedFairShare() throws InterruptedException {
+        AuthorizationBulkhead bulkhead = bulkhead(4, 4);
+
+        // Alone, a principal may use the whole compartment.
+        for (int i = 0; i < 4; i++) {
+            assertTrue(bulkhead.acquire("partition", "batch", 0));
+        }
+        assertFalse(bulkhead.acquire("partition", "interactive", 0));
+
+        // Once another principal competes, freed slots go to it instead of the heavy user.
+        bulkhead.release("partition", "batch");
+        bulkhead.release("partition", "batch");
+        bulkhead.release("partition", "batch");
+        assertTrue(bulkhead.acquire("partition", "interactive", 0));
+        assertTrue(bulkhead.acquire("partition", "batch", 0));
+        assertFalse(bulkhead.acquire("partition", "batch", 0));
+        assertTrue(bulkhead.acquire("partition", "interactive", 0));
+    }
+
+    @Test
+    public void testUnknownTypeIsNotLimited() throws InterruptedException {
+        AuthorizationBulkhead bulkhead = bulkhead(1, 1);
+
+        assertTrue(bulkhead.acquire("column", "user", 0));
+        assertTrue(bulkhead.acquire("column", "user", 0));
+        bulkhead.release("column", "user");
+        assertEquals(0, bulkhead.getInFlight("column"));
+    }
+}
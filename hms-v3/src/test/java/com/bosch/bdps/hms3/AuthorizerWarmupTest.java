@@ -0,0 +1,102 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuthorizerWarmupTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private final AtomicInteger healthChecks = new AtomicInteger();
+    private final Map<String, String> requests = new ConcurrentHashMap<>();
+
+    @AfterEach
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private String startServer(int healthStatus) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/health", exchange -> {
+            healthChecks.incrementAndGet();
+            exchange.sendResponseHeaders(healthStatus, 2);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("{}".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/v1/data/hms", exchange -> {
+            requests.put(exchange.getRequestURI().getPath(),
+                    new String(HttpUrlConnectionTransport.readFully(exchange.getRequestBody()), StandardCharsets.UTF_8));
+            byte[] response = "{\"result\": false}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/data";
+    }
+
+    @Test
+    public void testOpensConnectionsAndSendsSyntheticRequests() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(startServer(200));
+        Map<String, String> policyUrls = new HashMap<>();
+        policyUrls.put("table", "hms/table_allow");
+        policyUrls.put("column", "hms/column_allow");
+
+        assertTrue(new AuthorizerWarmup(client, 3, policyUrls).start().get(10, TimeUnit.SECONDS));
+
+        assertEquals(3, healthChecks.get());
+        assertEquals(2, requests.size());
+        JsonNode table = MAPPER.readTree(requests.get("/v1/data/hms/table_allow")).path("input");
+        assertEquals(AuthorizerWarmup.SYNTHETIC_USER, table.path("identity").path("username").asText());
+        assertEquals("warmup", table.path("resources").path("table").path("tableName").asText());
+        JsonNode column = MAPPER.readTree(requests.get("/v1/data/hms/column_allow")).path("input");
+        assertEquals("warmup", column.path("resources").path("columns").get(0).asText());
+    }
+
+    @Test
+    public void testReportsUnreadyOpa() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(startServer(500));
+
+        assertFalse(new AuthorizerWarmup(client, 2, Collections.emptyMap()).run());
+        assertEquals(2, healthChecks.get());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DecisionCacheTest {
+
+    private static final DecisionCache.Loader UNUSED = () -> {
+        throw new AssertionError("not expected to refresh");
+    };
+
+    @Test
+    public void testServesCachedDecisionsUntilExpiry() {
+        DecisionCache cache = new DecisionCache(new HeapDecisionStore(100), 60_000L, 0.0, Runnable::run);
+        assertNull(cache.get("a", UNUSED));
+
+        cache.put("a", true);
+        cache.put("b", false);
+        assertTrue(cache.get("a", UNUSED));
+        assertFalse(cache.get("b", UNUSED));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        DecisionCache expired = new DecisionCache(new HeapDecisionStore(100), 0L, 0.0, Runnable::run);
+        expired.put("a", true);
+        assertNull(expired.get("a", UNUSED));
+    }
+
+    @Test
+    public void testRefreshesAheadOfExpiry() {
+        DecisionCache cache = new DecisionCache(new HeapDecisionStore(100), 60_000L, 1.0, Runnable::run);
+        cache.put("a", true);
+
+        // The stale decision is served, the refreshed one is used from then on.
+        assertTrue(cache.get("a", () -> PolicyDecision.of(false)));
+        assertFalse(cache.get("a", () -> PolicyDecision.of(false)));
+        assertEquals(2, cache.getRefreshCount());
+    }
+
+    @Test
+    public void testDetachesLoaderBeforeHandingOffRefresh() {
+        List<Runnable> queued = new ArrayList<>();
+        DecisionCache cache = new DecisionCache(new HeapDecisionStore(100), 60_000L, 1.0, queued::add);
+        cache.put("a", true);
+        Thread reader = Thread.currentThread();
+        AtomicInteger detached = new AtomicInteger();
+        cache.get("a", new DecisionCache.Loader() {
+            @Override
+            public PolicyDecision load() {
+                throw new AssertionError("the detached loader is expected to run");
+            }
+
+            @Override
+            public DecisionCache.Loader detach() {
+                assertSame(reader, Thread.currentThread());
+                detached.incrementAndGet();
+                return () -> PolicyDecision.of(false);
+            }
+        });
+
+        assertEquals(1, detached.get());
+        queued.get(0).run();
+        assertFalse(cache.get("a", UNUSED));
+    }
+
+    @Test
+    public void testOnlyOneRefreshInFlightPerEntry() {
+        AtomicInteger loads = new AtomicInteger();
+        DecisionCache cache = new DecisionCache(new HeapDecisionStore(100), 60_000L, 1.0, runnable -> {
+            // Never runs, like a refresh that has not landed yet.
+        });
+        cache.put("a", true);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(cache.get("a", () -> PolicyDecision.of(loads.incrementAndGet() > 0)));
+        }
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void testFailedOrRejectedRefreshKeepsDecision() {
+        DecisionCache failing = new DecisionCache(new HeapDecisionStore(100), 60_000L, 1.0, Runnable::run);
+        failing.put("a", true);
+        AtomicInteger attempts = new AtomicInteger();
+        DecisionCache.Loader down = () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("OPA is down");
+        };
+        assertTrue(failing.get("a", down));
+        assertTrue(failing.get("a", down));
+        assertEquals(2, attempts.get());
+        assertEquals(2, failing.getRefreshFailureCount());
+
+        DecisionCache saturated = new DecisionCache(new HeapDecisionStore(100), 60_000L, 1.0, runnable -> {
+            throw new RejectedExecutionException("saturated");
+        });
+        saturated.put("a", false);
+        assertFalse(saturated.get("a", UNUSED));
+    }
+
+    @Test
+    public void testHonorsLifetimeHintsOfPolicies() {
+        DecisionCache cache = new DecisionCache(new HeapDecisionStore(100), 60_000L, 0.0, Runnable::run);
+        cache.put("stable", new PolicyDecision(true, 3_600_000L, PolicyDecision.Scope.SHARED));
+        cache.put("default", PolicyDecision.of(false));
+        cache.put("call", new PolicyDecision(true, PolicyDecision.DEFAULT_TTL, PolicyDecision.Scope.CALL));
+
+        assertTrue(DecisionStore.expiresAt(cache.getStore().get("stable")) > System.currentTimeMillis() + 60_000L);
+        assertFalse(cache.get("default", UNUSED));
+        assertNull(cache.get("call", UNUSED));
+
+        // A decision that must not be cached any more replaces the cached one.
+        cache.put("default", new PolicyDecision(false, 0L, PolicyDecision.Scope.SHARED));
+        assertNull(cache.get("default", UNUSED));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        DecisionCache cache = new DecisionCache(new HeapDecisionStore(2), 60_000L, 0.0, Runnable::run);
+        cache.put("a", true);
+        cache.put("b", true);
+        cache.get("a", UNUSED);
+        cache.put("c", true);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b", UNUSED));
+        assertTrue(cache.get("a", UNUSED));
+    }
+}
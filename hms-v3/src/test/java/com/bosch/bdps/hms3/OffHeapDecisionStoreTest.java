@@ -0,0 +1,71 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapDecisionStoreTest {
+
+    private static final long SMALLEST_BUDGET = (long) OffHeapDecisionStore.SEGMENTS
+            * OffHeapDecisionStore.MAX_PROBES * OffHeapDecisionStore.SLOT_BYTES;
+
+    @Test
+    public void testStoresEntriesByKey() {
+        OffHeapDecisionStore store = new OffHeapDecisionStore(1024 * 1024);
+        for (int i = 0; i < 10_000; i++) {
+            store.put("hms/table_allow|user" + i + "|db.t", DecisionStore.entry(i % 2 == 0, 1_000L + i));
+        }
+        assertEquals(10_000, store.size());
+
+        long entry = store.get("hms/table_allow|user42|db.t");
+        assertTrue(DecisionStore.decision(entry));
+        assertEquals(1_042L, DecisionStore.expiresAt(entry));
+        assertFalse(DecisionStore.decision(store.get("hms/table_allow|user43|db.t")));
+        assertEquals(DecisionStore.NONE, store.get("hms/table_allow|unknown|db.t"));
+
+        store.put("hms/table_allow|user42|db.t", DecisionStore.entry(false, 5_000L));
+        assertEquals(DecisionStore.entry(false, 5_000L), store.get("hms/table_allow|user42|db.t"));
+        assertEquals(10_000, store.size());
+    }
+
+    @Test
+    public void testOverwritesEarliestExpiryWhenFull() {
+        OffHeapDecisionStore store = new OffHeapDecisionStore(SMALLEST_BUDGET);
+        assertEquals(OffHeapDecisionStore.SEGMENTS * OffHeapDecisionStore.MAX_PROBES, store.getCapacity());
+
+        for (int i = 1; i <= 5_000; i++) {
+            store.put("key" + i, DecisionStore.entry(true, i));
+        }
+        assertEquals(store.getCapacity(), store.size());
+        assertEquals(DecisionStore.entry(true, 5_000L), store.get("key5000"));
+        assertEquals(DecisionStore.NONE, store.get("key1"));
+    }
+
+    @Test
+    public void testClear() {
+        OffHeapDecisionStore store = new OffHeapDecisionStore(SMALLEST_BUDGET);
+        store.put("key", DecisionStore.entry(true, 1_000L));
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertEquals(DecisionStore.NONE, store.get("key"));
+    }
+}
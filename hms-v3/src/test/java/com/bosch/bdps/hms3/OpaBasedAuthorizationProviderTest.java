@@ -16,6 +16,10 @@
 
 package com.bosch.bdps.hms3;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.metastore.api.Database;
 import org.apache.hadoop.hive.ql.metadata.AuthorizationException;
@@ -34,18 +38,32 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.anyMap;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -67,7 +85,7 @@ public class OpaBasedAuthorizationProviderTest {
     private final Configuration configuration = new Configuration();
 
     @BeforeEach
-    public void setUp() throws HiveException {
+    public void setUp() throws Exception {
         when(authenticationProvider.getUserName()).thenReturn("testUser");
         when(authenticationProvider.getGroupNames()).thenReturn(Collections.singletonList("testGroup"));
 
@@ -79,6 +97,13 @@ public class OpaBasedAuthorizationProviderTest {
         authorizationProvider.setConf(configuration);
 
         authorizationProvider.setOpa(opaClient);
+        decideByCheck(opaClient);
+    }
+
+    // Lets tests stub check(); the provider asks decide() to also get the hints of a policy.
+    private static void decideByCheck(OpaBasedAuthorizationProvider.OpaHttpClient client) throws Exception {
+        lenient().when(client.decide(anyString(), anyMap())).thenAnswer(invocation ->
+                PolicyDecision.of(client.check(invocation.getArgument(0), invocation.getArgument(1))));
     }
 
     @Test
@@ -228,6 +253,522 @@ public class OpaBasedAuthorizationProviderTest {
         });
     }
 
+    @Test
+    public void testRejectedWhenTooManyRequestsInFlight() throws Exception {
+        Configuration limited = new Configuration(configuration);
+        limited.set("com.bosch.bdps.opa.authorization.base.endpoint", "http://limited:8181/v1/data");
+        limited.set("com.bosch.bdps.opa.authorization.limiter.enabled", "true");
+        limited.set("com.bosch.bdps.opa.authorization.limiter.initial", "1");
+        limited.set("com.bosch.bdps.opa.authorization.limiter.max.wait.ms", "0");
+        authorizationProvider.setConf(limited);
+        authorizationProvider.setOpa(opaClient);
+
+        AdaptiveConcurrencyLimiter limiter = authorizationProvider.getLimiter();
+        assertTrue(limiter.acquire(0));
+        try {
+            assertThrows(HiveException.class, () -> {
+                authorizationProvider.authorize(mock(Table.class), new Privilege[]{}, new Privilege[]{});
+            });
+            verify(opaClient, never()).check(anyString(), anyMap());
+        } finally {
+            limiter.release(0L, false);
+        }
+    }
+
+    @Test
+    public void testPartitionFloodDoesNotBlockTableChecks() throws Exception {
+        Configuration isolated = new Configuration(configuration);
+        isolated.set("com.bosch.bdps.opa.authorization.base.endpoint", "http://isolated:8181/v1/data");
+        isolated.set("com.bosch.bdps.opa.authorization.bulkhead.enabled", "true");
+        isolated.set("com.bosch.bdps.opa.authorization.bulkhead.partition.limit", "1");
+        isolated.set("com.bosch.bdps.opa.authorization.bulkhead.max.wait.ms", "0");
+        authorizationProvider.setConf(isolated);
+        authorizationProvider.setOpa(opaClient);
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(true);
+
+        AuthorizationBulkhead bulkhead = authorizationProvider.getBulkhead();
+        assertTrue(bulkhead.acquire("partition", "testUser", 0));
+        try {
+            assertThrows(HiveException.class, () -> {
+                authorizationProvider.authorize(mock(Partition.class), new Privilege[]{}, new Privilege[]{});
+            });
+            authorizationProvider.authorize(mock(Table.class), new Privilege[]{}, new Privilege[]{});
+            verify(opaClient, never()).check(eq("hms/partition_allow"), anyMap());
+        } finally {
+            bulkhead.release("partition", "testUser");
+        }
+    }
+
+    @Test
+    public void testEntitlementIndexAnswersMatchingGrants() throws Exception {
+        EntitlementIndexRefresher entitlements = new EntitlementIndexRefresher(opaClient, "hms/entitlements", 60000);
+        when(opaClient.getDocument("hms/entitlements")).thenReturn(new ObjectMapper().readTree(
+                "{\"grants\": [{\"group\": \"testGroup\", \"database\": \"db\", \"table\": \"granted\", \"privileges\": [\"SELECT\"]}]}"));
+        entitlements.refresh();
+        authorizationProvider.setEntitlements(entitlements);
+
+        Table granted = mock(Table.class);
+        when(granted.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "granted", "db", null, 0, 0, 0, null, null, null, null, null, null));
+        authorizationProvider.authorize(granted, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient, never()).check(anyString(), anyMap());
+
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(true);
+        authorizationProvider.authorize(granted, new Privilege[]{Privilege.SELECT}, new Privilege[]{Privilege.INSERT});
+        verify(opaClient).check(eq("hms/table_allow"), anyMap());
+    }
+
+    @Test
+    public void testResidualPolicyDecidesLocally() throws Exception {
+        when(opaClient.compile(eq("hms/table_allow"), any(), anyMap(), anyList()))
+                .thenReturn(new ObjectMapper().readTree(ResidualPolicyTest.TABLE_RESIDUAL));
+        authorizationProvider.setResiduals(new ResidualPolicyCache(opaClient, 60000, 100));
+
+        Table allowed = mock(Table.class);
+        when(allowed.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "t", "test_db", null, 0, 0, 0, null, null, null, null, null, null));
+        Table denied = mock(Table.class);
+        when(denied.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "t", "other_db", null, 0, 0, 0, null, null, null, null, null, null));
+
+        authorizationProvider.authorize(allowed, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        assertThrows(AuthorizationException.class, () -> {
+            authorizationProvider.authorize(denied, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        });
+        verify(opaClient, never()).check(anyString(), anyMap());
+    }
+
+    @Test
+    public void testShadowEvaluationAfterPrimaryDecision() throws Exception {
+        ShadowEvaluator shadow = mock(ShadowEvaluator.class);
+        authorizationProvider.setShadow(shadow);
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(false);
+
+        assertThrows(AuthorizationException.class, () -> {
+            authorizationProvider.authorize(mock(Table.class), new Privilege[]{}, new Privilege[]{});
+        });
+        verify(shadow).submit(eq("table"), anyMap(), eq(false));
+    }
+
+    @Test
+    public void testProvidersOfAllThreadsShareOneEngine() {
+        Configuration limited = new Configuration(configuration);
+        limited.set("com.bosch.bdps.opa.authorization.limiter.enabled", "true");
+        authorizationProvider.setConf(limited);
+        OpaBasedAuthorizationProvider other = new OpaBasedAuthorizationProvider();
+        other.setAuthenticator(authenticationProvider);
+        other.setConf(limited);
+
+        AuthorizationEngine engine = AuthorizationEngine.forEndpoint("http://localhost:8181/v1/data");
+        assertNotNull(other.getLimiter());
+        assertSame(engine.getComponent(AdaptiveConcurrencyLimiter.class, ""), other.getLimiter());
+        assertSame(authorizationProvider.getLimiter(), other.getLimiter());
+        assertNotNull(engine.getComponent(OpaBasedAuthorizationProvider.OpaHttpClient.class, ""));
+    }
+
+    @Test
+    public void testDecisionCacheAnswersRepeatedChecks() throws Exception {
+        Configuration cached = new Configuration(configuration);
+        cached.set("com.bosch.bdps.opa.authorization.base.endpoint", "http://cached:8181/v1/data");
+        cached.set("com.bosch.bdps.opa.authorization.cache.enabled", "true");
+        cached.set("com.bosch.bdps.opa.authorization.cache.refresh.ahead", "0");
+        authorizationProvider.setConf(cached);
+        authorizationProvider.setOpa(opaClient);
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(true);
+
+        Table table = mock(Table.class);
+        when(table.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "cached_table", "db", null, 0, 0, 0, null, null, null, null, null, null));
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient).check(eq("hms/table_allow"), anyMap());
+
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{Privilege.ALTER_DATA});
+        verify(opaClient, times(2)).check(eq("hms/table_allow"), anyMap());
+    }
+
+    @Test
+    public void testDecisionCacheHonorsHintsOfPolicies() throws Exception {
+        Configuration cached = new Configuration(configuration);
+        cached.set("com.bosch.bdps.opa.authorization.base.endpoint", "http://hinted:8181/v1/data");
+        cached.set("com.bosch.bdps.opa.authorization.cache.enabled", "true");
+        cached.set("com.bosch.bdps.opa.authorization.cache.refresh.ahead", "0");
+        authorizationProvider.setConf(cached);
+        authorizationProvider.setOpa(opaClient);
+        doReturn(new PolicyDecision(true, PolicyDecision.DEFAULT_TTL, PolicyDecision.Scope.CALL))
+                .when(opaClient).decide(eq("hms/table_allow"), anyMap());
+        doReturn(new PolicyDecision(true, 60_000L, PolicyDecision.Scope.SHARED))
+                .when(opaClient).decide(eq("hms/database_allow"), anyMap());
+
+        Table table = mock(Table.class);
+        when(table.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "hinted_table", "db", null, 0, 0, 0, null, null, null, null, null, null));
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient, times(2)).decide(eq("hms/table_allow"), anyMap());
+
+        Database db = mock(Database.class);
+        when(db.getName()).thenReturn("hinted_db");
+        authorizationProvider.authorize(db, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        authorizationProvider.authorize(db, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient).decide(eq("hms/database_allow"), anyMap());
+    }
+
+    @Test
+    public void testAuthorizationRecordedByFlightRecorder() throws Exception {
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(false);
+        Table table = mock(Table.class);
+        when(table.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "recorded", "db", null, 0, 0, 0, null, null, null, null, null, null));
+
+        Path file = Files.createTempFile("opa-authorizer", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.bosch.bdps.opa.Authorization").withThreshold(Duration.ZERO);
+            recording.start();
+            assertThrows(AuthorizationException.class, () -> {
+                authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+            });
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(1, events.size());
+            assertEquals("hms/table_allow", events.get(0).getString("policy"));
+            assertEquals("testUser", events.get(0).getString("user"));
+            assertEquals("|table=db.recorded", events.get(0).getString("resource"));
+            assertEquals("opa", events.get(0).getString("source"));
+            assertEquals("disabled", events.get(0).getString("cacheOutcome"));
+            assertTrue(events.get(0).getBoolean("decided"));
+            assertFalse(events.get(0).getBoolean("allowed"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDeferredCheckRecordedWithoutDecision() throws Exception {
+        Configuration combined = new Configuration(configuration);
+        combined.set("com.bosch.bdps.opa.authorization.scope.enabled", "true");
+        combined.set("com.bosch.bdps.opa.authorization.scope.combined.path", "hms/decisions");
+        authorizationProvider.setConf(combined);
+        authorizationProvider.setOpa(opaClient);
+        Database db = mock(Database.class);
+        when(db.getName()).thenReturn("sales");
+
+        Path file = Files.createTempFile("opa-authorizer", ".jfr");
+        AuthorizationScope scope = AuthorizationScope.open();
+        try (Recording recording = new Recording()) {
+            recording.enable("com.bosch.bdps.opa.Authorization").withThreshold(Duration.ZERO);
+            recording.start();
+            authorizationProvider.authorize(db, new Privilege[]{}, new Privilege[]{Privilege.CREATE});
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(1, events.size());
+            assertEquals("deferred", events.get(0).getString("source"));
+            assertFalse(events.get(0).getBoolean("decided"));
+        } finally {
+            scope.close();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testScopeAnswersIdenticalChecksOnce() throws Exception {
+        Configuration scoped = new Configuration(configuration);
+        scoped.set("com.bosch.bdps.opa.authorization.scope.enabled", "true");
+        authorizationProvider.setConf(scoped);
+        authorizationProvider.setOpa(opaClient);
+        Database db = mock(Database.class);
+        when(db.getName()).thenReturn("scoped");
+        when(opaClient.check(eq("hms/database_allow"), anyMap())).thenReturn(true);
+
+        AuthorizationScope scope = AuthorizationScope.open();
+        try {
+            authorizationProvider.authorize(db, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+            authorizationProvider.authorize(db, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+            assertTrue(scope.resolve());
+        } finally {
+            scope.close();
+        }
+        verify(opaClient).check(eq("hms/database_allow"), anyMap());
+
+        // The next metastore call checks again.
+        authorizationProvider.authorize(db, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient, times(2)).check(eq("hms/database_allow"), anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCombinedQueryDecidesChecksOfOneCall() throws Exception {
+        Configuration combined = new Configuration(configuration);
+        combined.set("com.bosch.bdps.opa.authorization.scope.enabled", "true");
+        combined.set("com.bosch.bdps.opa.authorization.scope.combined.path", "hms/decisions");
+        authorizationProvider.setConf(combined);
+        authorizationProvider.setOpa(opaClient);
+        Database db = mock(Database.class);
+        when(db.getName()).thenReturn("sales");
+        Table table = mock(Table.class);
+        when(table.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "orders", "sales", null, 0, 0, 0, null, null, null, null, null, null));
+        Map<String, PolicyDecision> results = new HashMap<>();
+        results.put("0", PolicyDecision.of(true));
+        results.put("1", PolicyDecision.of(false));
+        when(opaClient.checkAll(eq("hms/decisions"), anyList())).thenReturn(results);
+
+        Privilege[] create = new Privilege[]{Privilege.CREATE};
+        AuthorizationScope scope = AuthorizationScope.open();
+        try {
+            authorizationProvider.authorize(db, new Privilege[]{}, create);
+            authorizationProvider.authorize(table, new Privilege[]{}, create);
+            authorizationProvider.authorize(db, new Privilege[]{}, create);
+            assertFalse(scope.resolve());
+
+            // The listener runs the authorizers again, answered from the scope, to fail the call.
+            authorizationProvider.authorize(db, new Privilege[]{}, create);
+            assertThrows(AuthorizationException.class, () -> authorizationProvider.authorize(table, new Privilege[]{}, create));
+        } finally {
+            scope.close();
+        }
+
+        ArgumentCaptor<List<Map<String, Object>>> checks = ArgumentCaptor.forClass(List.class);
+        verify(opaClient).checkAll(eq("hms/decisions"), checks.capture());
+        assertEquals(2, checks.getValue().size());
+        assertEquals("hms/database_allow", checks.getValue().get(0).get("path"));
+        assertEquals("1", checks.getValue().get(1).get("id"));
+        assertEquals("hms/table_allow", checks.getValue().get(1).get("path"));
+        verify(opaClient, never()).check(anyString(), anyMap());
+    }
+
+    @Test
+    public void testCombinedQueryTakesBulkheadSlots() throws Exception {
+        Configuration combined = new Configuration(configuration);
+        combined.set("com.bosch.bdps.opa.authorization.base.endpoint", "http://combined-bulkhead:8181/v1/data");
+        combined.set("com.bosch.bdps.opa.authorization.scope.enabled", "true");
+        combined.set("com.bosch.bdps.opa.authorization.scope.combined.path", "hms/decisions");
+        combined.set("com.bosch.bdps.opa.authorization.bulkhead.enabled", "true");
+        authorizationProvider.setConf(combined);
+        authorizationProvider.setOpa(opaClient);
+        AuthorizationBulkhead bulkhead = AuthorizationEngine.forEndpoint("http://combined-bulkhead:8181/v1/data")
+                .getComponent(AuthorizationBulkhead.class, "");
+        Database db = mock(Database.class);
+        when(db.getName()).thenReturn("sales");
+        Table table = mock(Table.class);
+        when(table.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "orders", "sales", null, 0, 0, 0, null, null, null, null, null, null));
+        when(opaClient.checkAll(eq("hms/decisions"), anyList())).thenAnswer(invocation -> {
+            assertEquals(1, bulkhead.getInFlight("database"));
+            assertEquals(1, bulkhead.getInFlight("table"));
+            assertEquals(0, bulkhead.getInFlight("partition"));
+            Map<String, PolicyDecision> results = new HashMap<>();
+            results.put("0", PolicyDecision.of(true));
+            results.put("1", PolicyDecision.of(true));
+            return results;
+        });
+
+        AuthorizationScope scope = AuthorizationScope.open();
+        try {
+            authorizationProvider.authorize(db, new Privilege[]{}, new Privilege[]{Privilege.CREATE});
+            authorizationProvider.authorize(table, new Privilege[]{}, new Privilege[]{Privilege.CREATE});
+            assertTrue(scope.resolve());
+        } finally {
+            scope.close();
+        }
+        verify(opaClient).checkAll(eq("hms/decisions"), anyList());
+        assertEquals(0, bulkhead.getInFlight("database"));
+        assertEquals(0, bulkhead.getInFlight("table"));
+    }
+
+    @Test
+    public void testFanOutEvaluatesDeferredChecksInParallel() throws Exception {
+        Configuration parallel = new Configuration(configuration);
+        parallel.set("com.bosch.bdps.opa.authorization.scope.enabled", "true");
+        parallel.set("com.bosch.bdps.opa.authorization.fanout.enabled", "true");
+        parallel.set("com.bosch.bdps.opa.authorization.fanout.executor", "platform");
+        authorizationProvider.setConf(parallel);
+        authorizationProvider.setOpa(opaClient);
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(true);
+        Table[] tables = new Table[3];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = mock(Table.class);
+            when(tables[i].getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                    "fanout" + i, "db", null, 0, 0, 0, null, null, null, null, null, null));
+        }
+
+        AuthorizationScope scope = AuthorizationScope.open();
+        try {
+            for (Table table : tables) {
+                authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+            }
+            verify(opaClient, never()).check(anyString(), anyMap());
+            assertTrue(scope.resolve());
+            verify(opaClient, times(3)).check(eq("hms/table_allow"), anyMap());
+
+            authorizationProvider.authorize(tables[0], new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+            verify(opaClient, times(3)).check(eq("hms/table_allow"), anyMap());
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    public void testPrefetchesFrequentTablesAfterDatabaseCheck() throws Exception {
+        Configuration prefetching = new Configuration(configuration);
+        prefetching.set("com.bosch.bdps.opa.authorization.base.endpoint", "http://prefetch:8181/v1/data");
+        prefetching.set("com.bosch.bdps.opa.authorization.cache.enabled", "true");
+        prefetching.set("com.bosch.bdps.opa.authorization.cache.refresh.ahead", "0");
+        prefetching.set("com.bosch.bdps.opa.authorization.prefetch.enabled", "true");
+        authorizationProvider.setConf(prefetching);
+        authorizationProvider.setOpa(opaClient);
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(true);
+        when(opaClient.check(eq("hms/database_allow"), anyMap())).thenReturn(true);
+        Table table = mock(Table.class);
+        when(table.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "orders", "prefetched_db", null, 0, 0, 0, null, null, null, null, null, null));
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+
+        // Another user opens the database, the table decision is fetched before it is asked for.
+        when(authenticationProvider.getUserName()).thenReturn("otherUser");
+        Database db = mock(Database.class);
+        when(db.getName()).thenReturn("prefetched_db");
+        authorizationProvider.authorize(db, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        long deadline = System.currentTimeMillis() + 5000;
+        while (authorizationProvider.getPrefetcher().getPrefetchedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        verify(opaClient, times(2)).check(eq("hms/table_allow"), anyMap());
+
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient, times(2)).check(eq("hms/table_allow"), anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGroupKeyedDecisionsAreSharedByMembers() throws Exception {
+        Configuration grouped = new Configuration(configuration);
+        grouped.set("com.bosch.bdps.opa.authorization.base.endpoint", "http://groups:8181/v1/data");
+        grouped.set("com.bosch.bdps.opa.authorization.cache.enabled", "true");
+        grouped.set("com.bosch.bdps.opa.authorization.cache.refresh.ahead", "0");
+        grouped.set("com.bosch.bdps.opa.authorization.identity.dimensions.table", "groups");
+        grouped.set("com.bosch.bdps.opa.authorization.identity.minimize", "true");
+        authorizationProvider.setConf(grouped);
+        authorizationProvider.setOpa(opaClient);
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(true);
+        Table table = mock(Table.class);
+        when(table.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "team_table", "db", null, 0, 0, 0, null, null, null, null, null, null));
+
+        when(authenticationProvider.getGroupNames()).thenReturn(Arrays.asList("analysts", "staff"));
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient).check(eq("hms/table_allow"), captor.capture());
+        Map<String, Object> identity = (Map<String, Object>) captor.getValue().get("identity");
+        assertFalse(identity.containsKey("username"));
+        assertEquals(Arrays.asList("analysts", "staff"), identity.get("groups"));
+
+        // Another member of the same groups, listed differently, shares the decision.
+        when(authenticationProvider.getUserName()).thenReturn("otherUser");
+        when(authenticationProvider.getGroupNames()).thenReturn(Arrays.asList("staff", "analysts", "staff"));
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient).check(eq("hms/table_allow"), anyMap());
+
+        when(authenticationProvider.getGroupNames()).thenReturn(Collections.singletonList("staff"));
+        authorizationProvider.authorize(table, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient, times(2)).check(eq("hms/table_allow"), anyMap());
+
+        // Other policies still depend on the user.
+        Database db = mock(Database.class);
+        when(db.getName()).thenReturn("db");
+        when(opaClient.check(eq("hms/database_allow"), anyMap())).thenReturn(true);
+        authorizationProvider.authorize(db, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient).check(eq("hms/database_allow"), captor.capture());
+        assertEquals("otherUser", ((Map<String, Object>) captor.getValue().get("identity")).get("username"));
+    }
+
+    @Test
+    public void testRoutesChecksOfMatchingDatabases() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient tenantClient = mock(OpaBasedAuthorizationProvider.OpaHttpClient.class);
+        AuthorizationEngine.forEndpoint("http://tenant:8181/v1/data")
+                .component(OpaBasedAuthorizationProvider.OpaHttpClient.class, "", () -> tenantClient);
+        decideByCheck(tenantClient);
+        Configuration routed = new Configuration(configuration);
+        routed.set("com.bosch.bdps.opa.authorization.routes", "tenant");
+        routed.set("com.bosch.bdps.opa.authorization.route.tenant.endpoint", "http://tenant:8181/v1/data");
+        routed.set("com.bosch.bdps.opa.authorization.route.tenant.databases", "tenant_*");
+        routed.set("com.bosch.bdps.opa.authorization.route.tenant.policy.url.table", "tenant/table_allow");
+        authorizationProvider.setConf(routed);
+        authorizationProvider.setOpa(opaClient);
+        when(tenantClient.check(eq("tenant/table_allow"), anyMap())).thenReturn(true);
+        when(tenantClient.check(eq("hms/database_allow"), anyMap())).thenReturn(true);
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(true);
+
+        Table tenantTable = mock(Table.class);
+        when(tenantTable.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "orders", "tenant_sales", null, 0, 0, 0, null, null, null, null, null, null));
+        authorizationProvider.authorize(tenantTable, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        Database tenantDb = mock(Database.class);
+        when(tenantDb.getName()).thenReturn("tenant_sales");
+        authorizationProvider.authorize(tenantDb, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(tenantClient).check(eq("tenant/table_allow"), anyMap());
+        verify(tenantClient).check(eq("hms/database_allow"), anyMap());
+
+        Table otherTable = mock(Table.class);
+        when(otherTable.getTTable()).thenReturn(new org.apache.hadoop.hive.metastore.api.Table(
+                "orders", "sales", null, 0, 0, 0, null, null, null, null, null, null));
+        authorizationProvider.authorize(otherTable, new Privilege[]{Privilege.SELECT}, new Privilege[]{});
+        verify(opaClient).check(eq("hms/table_allow"), anyMap());
+        verify(opaClient, never()).check(eq("tenant/table_allow"), anyMap());
+    }
+
+    @Test
+    public void testRuntimeOverrideAppliesToNextCheck() throws Exception {
+        when(opaClient.check(eq("hms/table_allow_v2"), anyMap())).thenReturn(true);
+
+        RuntimeSettings.get().setOverride("policy.url.table", "hms/table_allow_v2");
+        try {
+            authorizationProvider.authorize(mock(Table.class), new Privilege[]{}, new Privilege[]{});
+        } finally {
+            RuntimeSettings.get().reset();
+        }
+        verify(opaClient).check(eq("hms/table_allow_v2"), anyMap());
+    }
+
+    @Test
+    public void testInvalidRuntimeOverrideKeepsPreviousSettings() throws Exception {
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(true);
+
+        RuntimeSettings.get().setOverride("policy.url.table", "hms/table_allow_v2");
+        RuntimeSettings.get().setOverride("retry.max", "many");
+        try {
+            authorizationProvider.authorize(mock(Table.class), new Privilege[]{}, new Privilege[]{});
+            authorizationProvider.authorize(mock(Table.class), new Privilege[]{}, new Privilege[]{});
+        } finally {
+            RuntimeSettings.get().reset();
+        }
+        verify(opaClient, times(2)).check(eq("hms/table_allow"), anyMap());
+        verify(opaClient, never()).check(eq("hms/table_allow_v2"), anyMap());
+    }
+
+    @Test
+    public void testDisablingEntitlementsStopsTheirRefresh() throws Exception {
+        Configuration entitled = new Configuration();
+        entitled.set("com.bosch.bdps.opa.authorization.base.endpoint", "http://entitled:8181/v1/data");
+        entitled.set("com.bosch.bdps.opa.authorization.entitlements.enabled", "true");
+        authorizationProvider.setConf(entitled);
+        authorizationProvider.setOpa(opaClient);
+        AuthorizationEngine engine = AuthorizationEngine.forEndpoint("http://entitled:8181/v1/data");
+        assertNotNull(engine.getComponent(EntitlementIndexRefresher.class, "hms/entitlements"));
+        when(opaClient.check(eq("hms/table_allow"), anyMap())).thenReturn(true);
+
+        RuntimeSettings.get().setOverride("entitlements.enabled", "false");
+        try {
+            authorizationProvider.authorize(mock(Table.class), new Privilege[]{}, new Privilege[]{});
+        } finally {
+            RuntimeSettings.get().reset();
+        }
+        assertNull(engine.getComponent(EntitlementIndexRefresher.class, "hms/entitlements"));
+    }
+
     @Test
     public void testGetHivePolicyProvider() throws HiveAuthzPluginException {
         assertNull(authorizationProvider.getHivePolicyProvider());
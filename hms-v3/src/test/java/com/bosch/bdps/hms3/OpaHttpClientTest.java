@@ -0,0 +1,366 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.bosch.bdps.opa.testkit.FakeOpaServer;
+import com.bosch.bdps.opa.testkit.Latency;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class OpaHttpClientTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private final Map<String, String> requests = new ConcurrentHashMap<>();
+    private final Map<String, String> queries = new ConcurrentHashMap<>();
+
+    @AfterEach
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private String startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        respond("/v1/data/hms/table_allow", 200, "{\"result\": true, \"metrics\": {\"timer_server_handler_ns\": 2000000,"
+                + " \"timer_rego_input_parse_ns\": 100000, \"timer_rego_query_eval_ns\": 1500000}}");
+        respond("/v1/data/hms/database_allow", 200, "{}");
+        respond("/v1/data/hms/hinted_allow", 200, "{\"result\": {\"allow\": true, \"ttl_seconds\": 3600, \"scope\": \"shared\"}}");
+        respond("/v1/data/hms/per_call_allow", 200, "{\"result\": {\"allow\": false, \"scope\": \"call\"}}");
+        respond("/v1/data/hms/partition_allow", 500, "{\"code\": \"internal_error\"}");
+        respond("/v1/data/hms/entitlements", 200, "{\"result\": {\"grants\": []}}");
+        respond("/v1/compile", 200, "{\"result\": {\"queries\": [[]]}}");
+        respond("/v1/data/hms/user_allow", 200,
+                "{\"provenance\": {\"version\": \"1.0.0\", \"bundles\": {\"hms\": {\"revision\": \"abc123\"}}}}");
+        respond("/v1/data/hms/revised_allow", 200,
+                "{\"result\": true, \"provenance\": {\"bundles\": {\"hms\": {\"revision\": \"def456\"}}}}");
+        respond("/health", 200, "{}");
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/data";
+    }
+
+    private void respond(String path, int status, String body) {
+        server.createContext(path, exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            queries.put(exchange.getRequestMethod() + " " + path, query == null ? "" : query);
+            requests.put(exchange.getRequestMethod() + " " + path,
+                    new String(HttpUrlConnectionTransport.readFully(exchange.getRequestBody()), StandardCharsets.UTF_8));
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+    }
+
+    @Test
+    public void testCheck() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(startServer());
+
+        assertTrue(client.check("hms/table_allow", Collections.singletonMap("resources", "x")));
+        JsonNode sent = MAPPER.readTree(requests.get("POST /v1/data/hms/table_allow"));
+        assertEquals("x", sent.path("input").path("resources").asText());
+
+        assertThrows(RuntimeException.class, () -> client.check("hms/database_allow", Collections.emptyMap()));
+        assertThrows(RuntimeException.class, () -> client.check("hms/partition_allow", Collections.emptyMap()));
+    }
+
+    @Test
+    public void testDecideReadsHintsOfPolicies() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(startServer());
+
+        PolicyDecision plain = client.decide("hms/table_allow", Collections.emptyMap());
+        assertTrue(plain.isAllowed());
+        assertEquals(PolicyDecision.DEFAULT_TTL, plain.getTtlMillis());
+        assertTrue(plain.isShared());
+
+        PolicyDecision hinted = client.decide("hms/hinted_allow", Collections.emptyMap());
+        assertTrue(hinted.isAllowed());
+        assertEquals(3_600_000L, hinted.getTtlMillis());
+        assertTrue(hinted.isShared());
+        assertTrue(client.check("hms/hinted_allow", Collections.emptyMap()));
+
+        PolicyDecision perCall = client.decide("hms/per_call_allow", Collections.emptyMap());
+        assertFalse(perCall.isAllowed());
+        assertEquals(PolicyDecision.Scope.CALL, perCall.getScope());
+        assertFalse(perCall.isShared());
+    }
+
+    @Test
+    public void testRetriesWhileOpaIsUnavailable() throws Exception {
+        String endpoint = startServer();
+        AtomicInteger attempts = new AtomicInteger();
+        server.createContext("/v1/data/hms/column_allow", exchange -> {
+            HttpUrlConnectionTransport.readFully(exchange.getRequestBody());
+            byte[] response = (attempts.incrementAndGet() < 3 ? "{}" : "{\"result\": true}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(attempts.get() < 3 ? 503 : 200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(endpoint);
+
+        assertThrows(RetryPolicy.TransientStatusException.class, () -> client.check("hms/column_allow", Collections.emptyMap()));
+
+        client.setRetryPolicy(new RetryPolicy(2, 1, 5, 1000, 0.1, 10));
+        assertTrue(client.check("hms/column_allow", Collections.emptyMap()));
+        assertEquals(3, attempts.get());
+        assertEquals(1, client.getRetryPolicy().getRetryCount());
+        // Errors of the policy are not retried.
+        assertThrows(RuntimeException.class, () -> client.check("hms/partition_allow", Collections.emptyMap()));
+        assertEquals(1, client.getRetryPolicy().getRetryCount());
+    }
+
+    @Test
+    public void testHealthAndRevision() throws Exception {
+        String endpoint = startServer();
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(endpoint);
+
+        assertTrue(client.isHealthy());
+        assertEquals("bundles=true", queries.get("GET /health"));
+        assertNull(client.getPolicyRevision());
+        assertEquals("hms=abc123", client.getRevision("hms/user_allow"));
+        assertEquals("hms=abc123", client.getPolicyRevision());
+        assertEquals("provenance=true", queries.get("GET /v1/data/hms/user_allow"));
+        assertSame(client.getTransport(), new OpaBasedAuthorizationProvider.OpaHttpClient(endpoint).getTransport());
+    }
+
+    @Test
+    public void testRequestRecordedByFlightRecorder(@TempDir Path directory) throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(startServer());
+        try (Recording recording = new Recording()) {
+            recording.enable("com.bosch.bdps.opa.OpaRequest").withThreshold(Duration.ZERO);
+            recording.start();
+            assertTrue(client.check("hms/table_allow", Collections.emptyMap()));
+            assertThrows(RuntimeException.class, () -> client.check("hms/partition_allow", Collections.emptyMap()));
+            recording.stop();
+            Path file = directory.resolve("requests.jfr");
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(2, events.size());
+            assertEquals("hms/table_allow", events.get(0).getString("policy"));
+            assertEquals("{\"input\":{}}".length(), events.get(0).getLong("requestSize"));
+            assertTrue(events.get(0).getLong("responseSize") > 0);
+            assertTrue(events.get(0).getBoolean("allowed"));
+            assertTrue(events.get(1).getBoolean("failed"));
+        }
+    }
+
+    @Test
+    public void testRevisionFromDecisions() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(startServer());
+
+        assertTrue(client.check("hms/revised_allow", Collections.emptyMap()));
+        assertEquals("provenance=true", queries.get("POST /v1/data/hms/revised_allow"));
+        assertEquals("hms=def456", client.getPolicyRevision());
+    }
+
+    @Test
+    public void testQueryMetrics() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(startServer());
+        assertTrue(client.check("hms/table_allow", Collections.emptyMap()));
+        assertEquals("provenance=true", queries.get("POST /v1/data/hms/table_allow"));
+        assertTrue(client.check("hms/table_allow", Collections.emptyMap()));
+        assertEquals("", queries.get("POST /v1/data/hms/table_allow"));
+
+        client.setMetrics(new OpaMetrics(1.0));
+        assertTrue(client.check("hms/table_allow", Collections.emptyMap()));
+        assertEquals("metrics=true", queries.get("POST /v1/data/hms/table_allow"));
+
+        Map<String, LatencyHistogram> timers = client.getMetrics().snapshot().get("hms/table_allow");
+        assertEquals(1, timers.get(OpaMetrics.ROUND_TRIP).getCount());
+        assertEquals(1.5, timers.get(OpaMetrics.SERVER_EVAL).getMeanMillis(), 0.001);
+    }
+
+    @Test
+    public void testAgainstFakeOpaWithFaults() throws Exception {
+        try (FakeOpaServer opa = new FakeOpaServer().start()) {
+            opa.decide("hms/table_allow", input -> "alice".equals(input.path("identity").asText()));
+            OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(opa.getDataEndpoint());
+            client.setRetryPolicy(new RetryPolicy(3, 1, 5, 5000, 1.0, 100));
+
+            assertTrue(client.check("hms/table_allow", Collections.singletonMap("identity", "alice")));
+            for (int i = 0; i < 20; i++) {
+                assertFalse(client.check("hms/table_allow", Collections.singletonMap("identity", "bob")));
+            }
+            // Sequential requests share one kept-alive connection.
+            assertEquals(1, opa.getConnectionCount());
+            assertEquals("bob", opa.getRequests("hms/table_allow").get(20).getInput().path("identity").asText());
+
+            opa.clearRequests();
+            opa.setErrorRate(1.0, 503);
+            assertThrows(RetryPolicy.TransientStatusException.class,
+                    () -> client.check("hms/table_allow", Collections.singletonMap("identity", "alice")));
+            assertEquals(4, opa.getRequests("hms/table_allow").size());
+
+            opa.resetFaults().setDropRate(1.0);
+            assertThrows(IOException.class, () -> client.check("hms/table_allow", Collections.singletonMap("identity", "alice")));
+
+            // A hung attempt is cut off at the deadline instead of blocking the handler thread.
+            opa.resetFaults().setLatency(Latency.fixed(5000));
+            client.setRetryPolicy(new RetryPolicy(3, 1, 5, 300, 1.0, 100));
+            long start = System.nanoTime();
+            assertThrows(SocketTimeoutException.class,
+                    () -> client.check("hms/table_allow", Collections.singletonMap("identity", "alice")));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2000));
+        }
+    }
+
+    @Test
+    public void testGetDocumentAndCompile() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(startServer() + "/");
+
+        assertTrue(client.getDocument("hms/entitlements").has("grants"));
+
+        JsonNode residual = client.compile("hms/table_allow", null, Collections.singletonMap("identity", "x"),
+                Collections.singletonList("input.resources"));
+        assertEquals(1, residual.path("queries").size());
+        JsonNode sent = MAPPER.readTree(requests.get("POST /v1/compile"));
+        assertEquals("data.hms.table_allow == true", sent.path("query").asText());
+        assertEquals("input.resources", sent.path("unknowns").get(0).asText());
+
+        client.compile("hms/table_allow", "allow", Collections.singletonMap("identity", "x"),
+                Collections.singletonList("input.resources"));
+        sent = MAPPER.readTree(requests.get("POST /v1/compile"));
+        assertEquals("data.hms.table_allow.allow == true", sent.path("query").asText());
+    }
+
+    @Test
+    public void testUnixDomainSocket(@TempDir Path directory) throws Exception {
+        ServerSocketChannel serverChannel;
+        SocketAddress address;
+        try {
+            address = UnixSocketTransport.socketAddress(directory.resolve("opa.sock").toString());
+            serverChannel = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                    .invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        } catch (UnsupportedOperationException e) {
+            assumeTrue(false, "Unix domain sockets are not supported by this JVM");
+            return;
+        }
+        serverChannel.bind(address);
+        AtomicInteger connections = new AtomicInteger();
+        Thread stub = new Thread(() -> serveUnixSocket(serverChannel, connections));
+        stub.setDaemon(true);
+        stub.start();
+
+        try {
+            String endpoint = "http+unix://" + URLEncoder.encode(directory.resolve("opa.sock").toString(), "UTF-8") + "/v1/data";
+            OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(endpoint);
+
+            assertTrue(client.check("hms/table_allow", Collections.emptyMap()));
+            assertFalse(client.check("hms/database_allow", Collections.emptyMap()));
+            assertThrows(RuntimeException.class, () -> client.check("hms/partition_allow", Collections.emptyMap()));
+            assertTrue(client.getDocument("hms/entitlements").has("grants"));
+            // Keep-alive: all requests went over one connection.
+            assertEquals(1, connections.get());
+
+            // OPA does not answer; the attempt times out and its connection is not reused.
+            client.setRetryPolicy(new RetryPolicy(0, 1, 1, 200, 0.1, 10));
+            assertThrows(SocketTimeoutException.class, () -> client.check("hms/hung_allow", Collections.emptyMap()));
+            assertTrue(client.check("hms/table_allow", Collections.emptyMap()));
+            assertEquals(2, connections.get());
+        } finally {
+            serverChannel.close();
+        }
+    }
+
+    // Minimal HTTP/1.1 server: table_allow -> true (Content-Length), database_allow -> false (chunked),
+    // partition_allow -> 500, hung_allow -> no answer, everything else -> entitlement document.
+    private static void serveUnixSocket(ServerSocketChannel serverChannel, AtomicInteger connections) {
+        try {
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                connections.incrementAndGet();
+                InputStream in = Channels.newInputStream(channel);
+                OutputStream out = Channels.newOutputStream(channel);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+                String requestLine;
+                while ((requestLine = reader.readLine()) != null) {
+                    int length = 0;
+                    String header;
+                    while (!(header = reader.readLine()).isEmpty()) {
+                        if (header.toLowerCase().startsWith("content-length:")) {
+                            length = Integer.parseInt(header.substring(15).trim());
+                        }
+                    }
+                    for (int i = 0; i < length; i++) {
+                        reader.read();
+                    }
+                    String response;
+                    if (requestLine.contains("hung_allow")) {
+                        continue;
+                    } else if (requestLine.contains("table_allow")) {
+                        response = "HTTP/1.1 200 OK\r\nContent-Length: 16\r\n\r\n{\"result\": true}";
+                    } else if (requestLine.contains("database_allow")) {
+                        response = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                                + "a\r\n{\"result\":\r\n7\r\n false}\r\n0\r\n\r\n";
+                    } else if (requestLine.contains("partition_allow")) {
+                        response = "HTTP/1.1 500 Internal Server Error\r\nContent-Length: 2\r\n\r\n{}";
+                    } else {
+                        response = "HTTP/1.1 200 OK\r\nContent-Length: 26\r\n\r\n{\"result\": {\"grants\": []}}";
+                    }
+                    out.write(response.getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+            }
+        } catch (IOException ignored) {
+            // server closed
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpaMetricsTest {
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(millis(1));
+        }
+        histogram.record(millis(100));
+
+        assertEquals(100, histogram.getCount());
+        assertTrue(histogram.getPercentileMillis(50) >= 1.0 && histogram.getPercentileMillis(50) < 2.1);
+        assertTrue(histogram.getPercentileMillis(100) >= 100.0);
+        assertEquals(1.99, histogram.getMeanMillis(), 0.01);
+    }
+
+    @Test
+    public void testServerTimersAreSplitFromRoundTrip() throws Exception {
+        OpaMetrics metrics = new OpaMetrics(1.0);
+        metrics.record("hms/table_allow", millis(1), millis(30), millis(1), new ObjectMapper().readTree("{"
+                + "\"timer_server_handler_ns\": " + millis(25) + ","
+                + "\"timer_rego_input_parse_ns\": " + millis(2) + ","
+                + "\"timer_rego_query_compile_ns\": " + millis(1) + ","
+                + "\"timer_rego_query_eval_ns\": " + millis(20) + "}"));
+
+        Map<String, LatencyHistogram> timers = metrics.snapshot().get("hms/table_allow");
+        assertEquals(8, timers.size());
+        assertEquals(21.0, timers.get(OpaMetrics.SERVER_EVAL).getMeanMillis(), 0.001);
+        assertEquals(2.0, timers.get(OpaMetrics.SERVER_ENCODE).getMeanMillis(), 0.001);
+        assertEquals(5.0, timers.get(OpaMetrics.NETWORK).getMeanMillis(), 0.001);
+    }
+
+    @Test
+    public void testClientTimingsWithoutServerMetrics() {
+        OpaMetrics metrics = new OpaMetrics(1.0);
+        metrics.record("hms/table_allow", millis(1), millis(30), millis(1), null);
+
+        Map<String, LatencyHistogram> timers = metrics.snapshot().get("hms/table_allow");
+        assertEquals(3, timers.size());
+        assertFalse(timers.containsKey(OpaMetrics.SERVER_EVAL));
+    }
+
+    @Test
+    public void testSampling() {
+        assertTrue(new OpaMetrics(1.0).sample());
+        assertFalse(new OpaMetrics(0.0).sample());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpaRouteTest {
+
+    @Test
+    public void testMatchesDatabasePatterns() {
+        OpaRoute route = new OpaRoute("tenant", Arrays.asList("tenant_a_*", "shared"), Collections.emptyList(),
+                Collections.emptyMap(), null, null);
+
+        assertTrue(route.matches(null, "tenant_a_sales"));
+        assertTrue(route.matches("hive", "TENANT_A_"));
+        assertTrue(route.matches("spark", "shared"));
+        assertFalse(route.matches(null, "tenant_b_sales"));
+        assertFalse(route.matches(null, "shared_copy"));
+        assertFalse(route.matches(null, null));
+    }
+
+    @Test
+    public void testMatchesCatalogs() {
+        OpaRoute route = new OpaRoute("spark", Collections.emptyList(), Collections.singletonList("Spark"),
+                Collections.emptyMap(), null, null);
+
+        assertTrue(route.matches("spark", "any"));
+        assertFalse(route.matches("hive", "any"));
+        // Databases without a catalog are in the default one.
+        assertFalse(route.matches(null, "any"));
+        assertTrue(new OpaRoute("hive", Collections.emptyList(), Collections.singletonList("hive"),
+                Collections.emptyMap(), null, null).matches(null, "any"));
+    }
+
+    @Test
+    public void testPolicyUrlFallsBackToBaseEndpoint() {
+        OpaRoute route = new OpaRoute("tenant", Collections.emptyList(), Collections.emptyList(),
+                Collections.singletonMap("table", "tenant/table_allow"), null, null);
+
+        assertEquals("tenant/table_allow", route.getPolicyUrl("table", "hms/table_allow"));
+        assertEquals("hms/database_allow", route.getPolicyUrl("database", "hms/database_allow"));
+    }
+}
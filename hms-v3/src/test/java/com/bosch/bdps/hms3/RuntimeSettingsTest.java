@@ -0,0 +1,102 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms3;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RuntimeSettingsTest {
+
+    private final RuntimeSettings settings = RuntimeSettings.get();
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    public void tearDown() {
+        settings.reset();
+    }
+
+    private static void write(File file, String content, long modified) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(modified);
+    }
+
+    @Test
+    public void testWatchedFileIsReloaded() throws Exception {
+        File file = tempDir.resolve("opa-authorizer.properties").toFile();
+        write(file, "com.bosch.bdps.opa.authorization.limiter.max = 50\n", 1_000_000L);
+        long generation = settings.getGeneration();
+
+        settings.watch(file, 60_000L);
+        assertEquals("50", settings.get("limiter.max"));
+        assertEquals(generation + 1, settings.getGeneration());
+
+        write(file, "limiter.max=80\nshadow.sample.rate=0.5\n", 2_000_000L);
+        settings.reload();
+        assertEquals("80", settings.get("limiter.max"));
+        assertEquals("0.5", settings.get("shadow.sample.rate"));
+        assertEquals(generation + 2, settings.getGeneration());
+    }
+
+    @Test
+    public void testJmxOverrideWinsOverFile() throws Exception {
+        File file = tempDir.resolve("opa-authorizer.properties").toFile();
+        write(file, "limiter.max=50\n", 1_000_000L);
+        settings.watch(file, 60_000L);
+
+        settings.setOverride("com.bosch.bdps.opa.authorization.limiter.max", "120");
+        assertEquals("120", settings.get("limiter.max"));
+
+        settings.clearOverride("limiter.max");
+        assertEquals("50", settings.get("limiter.max"));
+    }
+
+    @Test
+    public void testUnchangedSettingsKeepGeneration() {
+        settings.setOverride("limiter.max", "120");
+        long generation = settings.getGeneration();
+
+        settings.setOverride("limiter.max", "120");
+        settings.clearOverride("limiter.initial");
+        assertEquals(generation, settings.getGeneration());
+        assertNull(settings.get("limiter.initial"));
+    }
+
+    @Test
+    public void testOverridesCanBeSetThroughJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.bosch.bdps.opa:type=RuntimeSettings");
+
+        server.invoke(name, "setOverride", new Object[]{"partial.eval.enabled", "true"},
+                new String[]{String.class.getName(), String.class.getName()});
+        assertEquals("true", settings.get("partial.eval.enabled"));
+        assertEquals(settings.getGeneration(), server.getAttribute(name, "Generation"));
+    }
+}
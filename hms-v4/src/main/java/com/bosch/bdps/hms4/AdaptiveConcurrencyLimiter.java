@@ -0,0 +1,166 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of outstanding requests against OPA. The limit is not configured
+ * but discovered from the observed round-trip times, in the style of TCP Vegas: as long
+ * as the latency stays close to the lowest latency seen so far, the limit grows; once
+ * requests start to queue up inside OPA, it shrinks again. Failed requests back off
+ * multiplicatively (AIMD).
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    // Estimated number of queued requests below which the limit is increased ...
+    private static final int ALPHA = 3;
+    // ... and above which it is decreased.
+    private static final int BETA = 6;
+    private static final double BACKOFF_RATIO = 0.9;
+    // Forget the lowest round-trip time every so often, so a permanently changed
+    // baseline (e.g. OPA moved to another host) does not keep the limit down.
+    private static final int MIN_RTT_RESET_SAMPLES = 1000;
+
+    private final int minLimit;
+    private int maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long minRttNanos = Long.MAX_VALUE;
+    private int samples;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limiter bounds: min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Waits at most {@code maxWaitMillis} for a free slot.
+     *
+     * @return true if a slot was acquired and {@link #release(long, boolean)} must be called
+     */
+    public boolean acquire(long maxWaitMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0L) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a slot and feeds the observed round-trip time into the limit estimation.
+     *
+     * @param rttNanos round-trip time of the request
+     * @param dropped  whether the request failed, in which case the limit is reduced
+     */
+    public void release(long rttNanos, boolean dropped) {
+        lock.lock();
+        try {
+            int currentInFlight = inFlight;
+            inFlight--;
+            if (dropped) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            } else {
+                update(rttNanos, currentInFlight);
+            }
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long rttNanos, int currentInFlight) {
+        if (rttNanos <= 0L) {
+            return;
+        }
+        if (++samples >= MIN_RTT_RESET_SAMPLES) {
+            samples = 0;
+            minRttNanos = rttNanos;
+        }
+        if (rttNanos < minRttNanos) {
+            minRttNanos = rttNanos;
+        }
+        double queueSize = limit * (1.0 - (double) minRttNanos / rttNanos);
+        if (queueSize < ALPHA) {
+            // Only grow while the limit is actually used, otherwise it would drift
+            // towards the maximum during quiet periods.
+            if (currentInFlight * 2 >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        } else if (queueSize > BETA) {
+            limit = Math.max(minLimit, limit - 1);
+        }
+    }
+
+    /**
+     * Changes the upper bound at runtime, the current limit is clamped to it.
+     */
+    public void setMaxLimit(int maxLimit) {
+        lock.lock();
+        try {
+            this.maxLimit = Math.max(minLimit, maxLimit);
+            this.limit = Math.min(this.limit, this.maxLimit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
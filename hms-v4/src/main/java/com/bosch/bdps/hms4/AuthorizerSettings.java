@@ -0,0 +1,370 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The settings of the authorizer, all read and validated at once. A reload only takes
+ * effect if every setting is valid, so a bad value never leaves the authorizer with some
+ * settings applied and others not.
+ */
+final class AuthorizerSettings {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuthorizerSettings.class);
+
+    static final List<String> POLICY_TYPES = Collections.unmodifiableList(
+            Arrays.asList("user", "database", "table", "partition", "column"));
+    static final List<String> IDENTITY_DIMENSIONS = Collections.unmodifiableList(Arrays.asList("username", "groups"));
+
+    /**
+     * A route of some databases or catalogs to an endpoint of their own, see {@link OpaRoute}.
+     */
+    static final class Route {
+        final String name;
+        final String endpoint;
+        final Map<String, String> policyUrls;
+        final List<String> databases;
+        final List<String> catalogs;
+
+        private Route(String name, String endpoint, Map<String, String> policyUrls, List<String> databases,
+                      List<String> catalogs) {
+            this.name = name;
+            this.endpoint = endpoint;
+            this.policyUrls = policyUrls;
+            this.databases = databases;
+            this.catalogs = catalogs;
+        }
+    }
+
+    private final BinaryOperator<String> settings;
+
+    final String baseEndpoint;
+    final Map<String, String> policyUrls;
+
+    final double metricsSampleRate;
+
+    final boolean retryEnabled;
+    final int retryMax;
+    final long retryBackoffMillis;
+    final long retryBackoffMaxMillis;
+    final long retryDeadlineMillis;
+    final double retryBudgetRatio;
+    final int retryBudgetReserve;
+
+    final boolean limiterEnabled;
+    final int limiterInitial;
+    final int limiterMax;
+    final long limiterMaxWaitMillis;
+
+    final List<Route> routes;
+
+    final boolean bulkheadEnabled;
+    final Map<String, Integer> bulkheadLimits;
+    final long bulkheadMaxWaitMillis;
+
+    final boolean entitlementsEnabled;
+    final String entitlementsPath;
+    final long entitlementsRefreshMillis;
+
+    final boolean partialEvalEnabled;
+    final long partialEvalTtlMillis;
+    final int partialEvalMaxEntries;
+
+    final boolean cacheEnabled;
+    final long cacheTtlMillis;
+    final double cacheRefreshAhead;
+    final int cacheMaxEntries;
+    final int cacheRefreshThreads;
+    final boolean cacheOffHeap;
+    final long cacheOffHeapBytes;
+
+    final boolean prefetchEnabled;
+    final int prefetchMaxTables;
+    final double prefetchMinShare;
+    final int prefetchTrackedTables;
+    final int prefetchMaxDatabases;
+    final int prefetchThreads;
+    final int prefetchQueueSize;
+
+    final Map<String, List<String>> identityDimensions;
+    final boolean minimizeIdentity;
+    final boolean decomposeEntities;
+
+    final boolean scopeEnabled;
+    final String combinedPath;
+
+    final boolean fanOutEnabled;
+    final String fanOutExecutor;
+    final int fanOutThreads;
+    final int fanOutParallelism;
+
+    final boolean shadowEnabled;
+    final String shadowEndpoint;
+    final Map<String, String> shadowPolicyUrls;
+    final double shadowSampleRate;
+    final int shadowThreads;
+    final int shadowQueueSize;
+
+    final boolean jmxEnabled;
+
+    final String tlsTrustStorePath;
+    final String tlsTrustStorePassword;
+    final String tlsKeyStorePath;
+    final String tlsKeyStorePassword;
+    final String tlsStoreType;
+    final int tlsSessionCacheSize;
+    final int tlsSessionTimeoutSeconds;
+    final String[] tlsProtocols;
+    final String[] tlsCipherSuites;
+
+    /**
+     * Reads the settings, failing with an {@link IllegalArgumentException} naming the first
+     * invalid one, or a {@link NullPointerException} for a missing endpoint.
+     *
+     * @param settings looks up a setting by its name without prefix, or returns the default
+     */
+    AuthorizerSettings(BinaryOperator<String> settings) {
+        this.settings = settings;
+
+        this.baseEndpoint = requireNonNull(settings.apply("base.endpoint", null), "OPA_BASE_ENDPOINT is not set");
+        Map<String, String> policyUrls = new HashMap<>();
+        for (String type : POLICY_TYPES) {
+            policyUrls.put(type, settings.apply("policy.url." + type, "hms/" + type + "_allow"));
+        }
+        this.policyUrls = Collections.unmodifiableMap(policyUrls);
+
+        String metricsMode = settings.apply("metrics.mode", "off").toLowerCase();
+        this.metricsSampleRate = "off".equals(metricsMode) ? 0.0
+                : "always".equals(metricsMode) ? 1.0 : fraction("metrics.sample.rate", "0.01");
+
+        this.retryEnabled = flag("retry.enabled", "false");
+        this.retryMax = nonNegativeInt("retry.max", "2");
+        this.retryBackoffMillis = nonNegativeLong("retry.backoff.ms", "20");
+        this.retryBackoffMaxMillis = nonNegativeLong("retry.backoff.max.ms", "500");
+        this.retryDeadlineMillis = nonNegativeLong("retry.deadline.ms", "2000");
+        this.retryBudgetRatio = fraction("retry.budget.ratio", "0.1");
+        this.retryBudgetReserve = nonNegativeInt("retry.budget.reserve", "10");
+
+        this.limiterEnabled = flag("limiter.enabled", "false");
+        this.limiterInitial = positiveInt("limiter.initial", "20");
+        this.limiterMax = positiveInt("limiter.max", "200");
+        this.limiterMaxWaitMillis = nonNegativeLong("limiter.max.wait.ms", "200");
+
+        List<Route> routes = new ArrayList<>();
+        for (String name : list("routes")) {
+            routes.add(route(name));
+        }
+        this.routes = Collections.unmodifiableList(routes);
+
+        this.bulkheadEnabled = flag("bulkhead.enabled", "false");
+        Map<String, Integer> bulkheadLimits = new HashMap<>();
+        for (String type : POLICY_TYPES) {
+            bulkheadLimits.put(type, positiveInt("bulkhead." + type + ".limit", "partition".equals(type) ? "16" : "32"));
+        }
+        this.bulkheadLimits = Collections.unmodifiableMap(bulkheadLimits);
+        this.bulkheadMaxWaitMillis = nonNegativeLong("bulkhead.max.wait.ms", "500");
+
+        this.entitlementsEnabled = flag("entitlements.enabled", "false");
+        this.entitlementsPath = settings.apply("entitlements.path", "hms/entitlements");
+        this.entitlementsRefreshMillis = positiveLong("entitlements.refresh.seconds", "60") * 1000L;
+
+        this.partialEvalEnabled = flag("partial.eval.enabled", "false");
+        this.partialEvalTtlMillis = nonNegativeLong("partial.eval.ttl.seconds", "300") * 1000L;
+        this.partialEvalMaxEntries = positiveInt("partial.eval.max.entries", "10000");
+
+        this.cacheEnabled = flag("cache.enabled", "false");
+        this.cacheTtlMillis = nonNegativeLong("cache.ttl.seconds", "60") * 1000L;
+        this.cacheRefreshAhead = fraction("cache.refresh.ahead", "0.2");
+        this.cacheMaxEntries = positiveInt("cache.max.entries", "100000");
+        this.cacheRefreshThreads = positiveInt("cache.refresh.threads", "2");
+        this.cacheOffHeap = "offheap".equalsIgnoreCase(settings.apply("cache.store", "heap"));
+        this.cacheOffHeapBytes = positiveLong("cache.offheap.bytes", "67108864");
+
+        this.prefetchEnabled = flag("prefetch.enabled", "false");
+        this.prefetchMaxTables = nonNegativeInt("prefetch.max.tables", "32");
+        this.prefetchMinShare = fraction("prefetch.min.share", "0.02");
+        this.prefetchTrackedTables = positiveInt("prefetch.tracked.tables", "256");
+        this.prefetchMaxDatabases = positiveInt("prefetch.max.databases", "1000");
+        this.prefetchThreads = positiveInt("prefetch.threads", "2");
+        this.prefetchQueueSize = positiveInt("prefetch.queue.size", "100");
+
+        Map<String, List<String>> identityDimensions = new HashMap<>();
+        for (String type : POLICY_TYPES) {
+            identityDimensions.put(type, identityDimensions(type));
+        }
+        this.identityDimensions = Collections.unmodifiableMap(identityDimensions);
+        this.minimizeIdentity = flag("identity.minimize", "false");
+        this.decomposeEntities = flag("entities.decompose", "false");
+
+        this.scopeEnabled = flag("scope.enabled", "false");
+        this.combinedPath = settings.apply("scope.combined.path", null);
+
+        this.fanOutEnabled = flag("fanout.enabled", "false");
+        this.fanOutExecutor = settings.apply("fanout.executor", "auto");
+        this.fanOutThreads = positiveInt("fanout.threads", "16");
+        this.fanOutParallelism = positiveInt("fanout.parallelism", "8");
+
+        this.shadowEnabled = flag("shadow.enabled", "false");
+        this.shadowEndpoint = settings.apply("shadow.endpoint", this.baseEndpoint);
+        Map<String, String> shadowPolicyUrls = new HashMap<>();
+        for (String type : POLICY_TYPES) {
+            shadowPolicyUrls.put(type, settings.apply("shadow.policy.url." + type, this.policyUrls.get(type)));
+        }
+        this.shadowPolicyUrls = Collections.unmodifiableMap(shadowPolicyUrls);
+        this.shadowSampleRate = fraction("shadow.sample.rate", "0.01");
+        this.shadowThreads = positiveInt("shadow.threads", "2");
+        this.shadowQueueSize = positiveInt("shadow.queue.size", "100");
+
+        this.jmxEnabled = flag("jmx.enabled", "true");
+
+        this.tlsTrustStorePath = settings.apply("tls.truststore.path", null);
+        this.tlsTrustStorePassword = settings.apply("tls.truststore.password", null);
+        this.tlsKeyStorePath = settings.apply("tls.keystore.path", null);
+        this.tlsKeyStorePassword = settings.apply("tls.keystore.password", null);
+        this.tlsStoreType = settings.apply("tls.store.type", "PKCS12");
+        this.tlsSessionCacheSize = nonNegativeInt("tls.session.cache.size", "1000");
+        this.tlsSessionTimeoutSeconds = nonNegativeInt("tls.session.timeout.seconds", "86400");
+        this.tlsProtocols = listOrNull("tls.protocols");
+        this.tlsCipherSuites = listOrNull("tls.cipher.suites");
+    }
+
+    // Tells apart sets of TLS settings, without keeping the passwords in clear text.
+    String tlsQualifier() {
+        return String.join("|", String.valueOf(tlsTrustStorePath), String.valueOf(Objects.hashCode(tlsTrustStorePassword)),
+                String.valueOf(tlsKeyStorePath), String.valueOf(Objects.hashCode(tlsKeyStorePassword)), tlsStoreType,
+                String.valueOf(tlsSessionCacheSize), String.valueOf(tlsSessionTimeoutSeconds),
+                Arrays.toString(tlsProtocols), Arrays.toString(tlsCipherSuites));
+    }
+
+    private Route route(String name) {
+        String prefix = "route." + name + ".";
+        String endpoint = requireNonNull(settings.apply(prefix + "endpoint", null),
+                "OPA_ROUTE_" + name.toUpperCase() + "_ENDPOINT is not set");
+        Map<String, String> policyUrls = new HashMap<>();
+        for (String type : POLICY_TYPES) {
+            String policyUrl = settings.apply(prefix + "policy.url." + type, null);
+            if (policyUrl != null) {
+                policyUrls.put(type, policyUrl);
+            }
+        }
+        return new Route(name, endpoint, Collections.unmodifiableMap(policyUrls),
+                list(prefix + "databases"), list(prefix + "catalogs"));
+    }
+
+    // The parts of the identity the policy of a type depends on; decisions are shared by
+    // all users who agree on them, e.g. by all members of the same groups.
+    private List<String> identityDimensions(String type) {
+        String[] configured = listOrNull("identity.dimensions." + type);
+        if (configured == null) {
+            return IDENTITY_DIMENSIONS;
+        }
+        List<String> dimensions = new ArrayList<>();
+        for (String dimension : configured) {
+            if (IDENTITY_DIMENSIONS.contains(dimension)) {
+                dimensions.add(dimension);
+            } else {
+                LOG.warn("Ignoring unknown identity dimension {} of {} policy", dimension, type);
+            }
+        }
+        return Collections.unmodifiableList(dimensions);
+    }
+
+    private boolean flag(String name, String defaultValue) {
+        String value = settings.apply(name, defaultValue).trim();
+        if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+            throw invalid(name, value, "true or false");
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    private int positiveInt(String name, String defaultValue) {
+        return (int) check(name, parse(name, defaultValue, Integer.MAX_VALUE), 1, "a positive number");
+    }
+
+    private int nonNegativeInt(String name, String defaultValue) {
+        return (int) check(name, parse(name, defaultValue, Integer.MAX_VALUE), 0, "a number of at least 0");
+    }
+
+    private long positiveLong(String name, String defaultValue) {
+        return check(name, parse(name, defaultValue, Long.MAX_VALUE), 1, "a positive number");
+    }
+
+    private long nonNegativeLong(String name, String defaultValue) {
+        return check(name, parse(name, defaultValue, Long.MAX_VALUE), 0, "a number of at least 0");
+    }
+
+    private long parse(String name, String defaultValue, long max) {
+        String value = settings.apply(name, defaultValue).trim();
+        try {
+            long parsed = Long.parseLong(value);
+            if (parsed > max) {
+                throw invalid(name, value, "at most " + max);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw invalid(name, value, "a number");
+        }
+    }
+
+    private static long check(String name, long value, long min, String expected) {
+        if (value < min) {
+            throw invalid(name, String.valueOf(value), expected);
+        }
+        return value;
+    }
+
+    private double fraction(String name, String defaultValue) {
+        String value = settings.apply(name, defaultValue).trim();
+        double parsed;
+        try {
+            parsed = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw invalid(name, value, "a number between 0 and 1");
+        }
+        if (!(parsed >= 0.0 && parsed <= 1.0)) {
+            throw invalid(name, value, "a number between 0 and 1");
+        }
+        return parsed;
+    }
+
+    private List<String> list(String name) {
+        String[] values = listOrNull(name);
+        return values == null ? Collections.<String>emptyList() : Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    private String[] listOrNull(String name) {
+        String value = settings.apply(name, null);
+        return value == null || value.trim().isEmpty() ? null : value.trim().split("\\s*,\\s*");
+    }
+
+    private static IllegalArgumentException invalid(String name, String value, String expected) {
+        return new IllegalArgumentException("Invalid value of " + name + ": " + value + ", expected " + expected);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import java.util.function.Predicate;
+
+/**
+ * Storage backend of the {@link DecisionCache}. A cached decision is a single long,
+ * the expiry time in milliseconds shifted left by one with the decision in the lowest
+ * bit, so it can be kept outside of the Java heap without any object per entry.
+ */
+public interface DecisionStore {
+
+    /**
+     * Returned by {@link #get(String)} if there is no entry for the key.
+     */
+    long NONE = 0L;
+
+    long get(String key);
+
+    void put(String key, long entry);
+
+    void clear();
+
+    /**
+     * Removes the entries whose key matches. Stores that only keep hashes of the keys
+     * cannot tell and remove all entries.
+     *
+     * @return the number of removed entries, or -1 if all entries were removed
+     */
+    int removeIf(Predicate<String> key);
+
+    int size();
+
+    /**
+     * Changes the maximum number of entries. Stores sized by a byte budget ignore it.
+     */
+    void resize(int maxEntries);
+
+    static long entry(boolean decision, long expiresAtMillis) {
+        return expiresAtMillis << 1 | (decision ? 1L : 0L);
+    }
+
+    static boolean decision(long entry) {
+        return (entry & 1L) != 0L;
+    }
+
+    static long expiresAt(long entry) {
+        return entry >>> 1;
+    }
+}
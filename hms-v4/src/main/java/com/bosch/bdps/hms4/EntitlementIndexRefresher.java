@@ -0,0 +1,110 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically pulls the entitlement document from OPA and swaps in a freshly built
+ * {@link EntitlementIndex}. Readers only ever see a complete index and never lock.
+ * If refreshing keeps failing, the index is considered stale and no longer used, so
+ * revoked grants cannot be served from it indefinitely.
+ */
+public class EntitlementIndexRefresher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntitlementIndexRefresher.class);
+
+    private final OpaBasedAuthorizationProvider.OpaHttpClient opa;
+    private final String path;
+    private long intervalMillis;
+    private volatile long maxStaleMillis;
+
+    private volatile EntitlementIndex index = EntitlementIndex.EMPTY;
+    private volatile long lastRefreshMillis;
+    private ScheduledExecutorService scheduler;
+
+    public EntitlementIndexRefresher(OpaBasedAuthorizationProvider.OpaHttpClient opa, String path, long intervalMillis) {
+        this.opa = opa;
+        this.path = path;
+        this.intervalMillis = intervalMillis;
+        this.maxStaleMillis = 3 * intervalMillis;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "opa-entitlement-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0L, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Changes the refresh interval at runtime, keeping the current index.
+     */
+    public synchronized void setInterval(long intervalMillis) {
+        if (this.intervalMillis == intervalMillis) {
+            return;
+        }
+        this.intervalMillis = intervalMillis;
+        this.maxStaleMillis = 3 * intervalMillis;
+        if (scheduler != null) {
+            stop();
+            start();
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public void refresh() throws Exception {
+        EntitlementIndex refreshed = EntitlementIndex.parse(opa.getDocument(path));
+        this.index = refreshed;
+        this.lastRefreshMillis = System.currentTimeMillis();
+        LOG.debug("Refreshed entitlement index from {} with {} grants", path, refreshed.size());
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            LOG.warn("Failed to refresh entitlement index from {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the current index, or an empty one if it could not be refreshed for too long.
+     */
+    public EntitlementIndex current() {
+        if (System.currentTimeMillis() - lastRefreshMillis > maxStaleMillis) {
+            return EntitlementIndex.EMPTY;
+        }
+        return index;
+    }
+}
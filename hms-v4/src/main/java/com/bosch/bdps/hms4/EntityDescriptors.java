@@ -0,0 +1,87 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.apache.hadoop.hive.ql.hooks.Entity;
+import org.apache.hadoop.hive.ql.hooks.WriteEntity;
+import org.apache.hadoop.hive.ql.metadata.Partition;
+import org.apache.hadoop.hive.ql.metadata.Table;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Turns the read and write entities of an HMS 4 operation into compact descriptors, e.g.
+ * {@code {"type": "TABLE", "database": "sales", "table": "orders", "writeType": "INSERT"}},
+ * instead of sending the entities with their full table and partition objects.
+ */
+final class EntityDescriptors {
+
+    private EntityDescriptors() {
+    }
+
+    static Map<String, Object> describe(Entity entity) {
+        Map<String, Object> descriptor = new LinkedHashMap<>();
+        descriptor.put("type", entity.getType().name());
+        Table table = entity.getTable();
+        Partition partition = entity.getPartition();
+        if (entity.getType() == Entity.Type.DATABASE && entity.getDatabase() != null) {
+            descriptor.put("database", entity.getDatabase().getName());
+        } else if (partition != null && partition.getTable() != null) {
+            descriptor.put("database", partition.getTable().getDbName());
+            descriptor.put("table", partition.getTable().getTableName());
+            descriptor.put("partition", partition.getSpec());
+        } else if (table != null) {
+            descriptor.put("database", table.getDbName());
+            descriptor.put("table", table.getTableName());
+        } else {
+            descriptor.put("name", entity.getName());
+        }
+        if (entity instanceof WriteEntity && ((WriteEntity) entity).getWriteType() != null) {
+            descriptor.put("writeType", ((WriteEntity) entity).getWriteType().name());
+        }
+        return descriptor;
+    }
+
+    /**
+     * Names a descriptor in a decision key, e.g. |outputs=TABLE|table=sales.orders|writeType=INSERT,
+     * using the same resource names as the keys of other decisions.
+     */
+    static String key(String direction, Map<String, Object> descriptor) {
+        StringBuilder key = new StringBuilder("|").append(direction).append('=').append(descriptor.get("type"));
+        Object database = descriptor.get("database");
+        Object table = descriptor.get("table");
+        if (table != null) {
+            key.append("|table=").append(database).append('.').append(table);
+        } else if (database != null) {
+            key.append("|db=").append(database);
+        }
+        Object partition = descriptor.get("partition");
+        if (partition instanceof Map) {
+            key.append("|partition=").append(database).append('.').append(table)
+                    .append(new ArrayList<>(((Map<?, ?>) partition).values()));
+        }
+        if (descriptor.containsKey("name")) {
+            key.append("|name=").append(descriptor.get("name"));
+        }
+        if (descriptor.containsKey("writeType")) {
+            key.append("|writeType=").append(descriptor.get("writeType"));
+        }
+        return key.toString();
+    }
+}
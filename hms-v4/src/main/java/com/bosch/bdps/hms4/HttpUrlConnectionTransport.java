@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import javax.net.ssl.HttpsURLConnection;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Talks to OPA over TCP using {@link HttpURLConnection}, which keeps idle connections
+ * alive between requests. Its connection cache is internal to the JDK, sized by the
+ * {@code http.maxConnections} system property, so only active requests are counted.
+ * HTTPS connections are only reused if they were created by the same socket factory, so
+ * a transport uses one {@link TlsSocketFactory} for all of its requests.
+ */
+public class HttpUrlConnectionTransport implements OpaTransport {
+
+    private final String origin;
+    private final TlsSocketFactory tls;
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * @param origin scheme, host and port, e.g. {@code http://localhost:8181}
+     */
+    public HttpUrlConnectionTransport(String origin) {
+        this(origin, null);
+    }
+
+    /**
+     * @param tls creates the connections of an https origin, null for the JVM's default TLS settings
+     */
+    public HttpUrlConnectionTransport(String origin, TlsSocketFactory tls) {
+        this.origin = origin;
+        this.tls = tls;
+    }
+
+    @Override
+    public Response execute(String method, String path, byte[] body, int timeoutMillis) throws IOException {
+        active.incrementAndGet();
+        try {
+            return send(method, path, body, timeoutMillis);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int getActiveRequests() {
+        return active.get();
+    }
+
+    @Override
+    public long getFullTlsHandshakes() {
+        return tls == null ? -1 : tls.getFullHandshakeCount();
+    }
+
+    @Override
+    public long getResumedTlsHandshakes() {
+        return tls == null ? -1 : tls.getResumedHandshakeCount();
+    }
+
+    private Response send(String method, String path, byte[] body, int timeoutMillis) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(origin + path).openConnection();
+        conn.setConnectTimeout(timeoutMillis);
+        conn.setReadTimeout(timeoutMillis);
+        if (tls != null && conn instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) conn).setSSLSocketFactory(tls);
+        }
+        conn.setRequestMethod(method);
+        if (body != null) {
+            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setDoOutput(true);
+            try (OutputStream os = conn.getOutputStream()) {
+                os.write(body);
+            }
+        }
+        int code = conn.getResponseCode();
+        // The body has to be consumed completely, otherwise the connection is not reused.
+        InputStream in = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+        return new Response(code, in == null ? new byte[0] : readFully(in));
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -1,282 +1,1459 @@
-/*
- * Copyright 2025 the Hive Metastore Opa Authorizer Authors
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package com.bosch.bdps.hms4;
-
-import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.hive.metastore.IHMSHandler;
-import org.apache.hadoop.hive.metastore.api.Database;
-import org.apache.hadoop.hive.ql.hooks.ReadEntity;
-import org.apache.hadoop.hive.ql.hooks.WriteEntity;
-import org.apache.hadoop.hive.ql.metadata.AuthorizationException;
-import org.apache.hadoop.hive.ql.metadata.HiveException;
-import org.apache.hadoop.hive.ql.metadata.Partition;
-import org.apache.hadoop.hive.ql.metadata.Table;
-import org.apache.hadoop.hive.ql.security.HiveAuthenticationProvider;
-import org.apache.hadoop.hive.ql.security.authorization.HiveMetastoreAuthorizationProvider;
-import org.apache.hadoop.hive.ql.security.authorization.Privilege;
-import org.apache.hadoop.hive.ql.security.authorization.plugin.HivePolicyProvider;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.JsonNode;
-
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
-
-import static java.util.Objects.requireNonNull;
-
-/**
- * The class OpaBasedAuthorizationProvider is responsible for authorizing requests
- */
-public class OpaBasedAuthorizationProvider implements HiveMetastoreAuthorizationProvider {
-
-    public static final Logger LOG = LoggerFactory.getLogger(OpaBasedAuthorizationProvider.class);
-    private HiveAuthenticationProvider authenticationProvider;
-    private Configuration config;
-    private OpaHttpClient opa;
-
-    private String tableAuthResource;
-    private String columnAuthResource;
-    private String databaseAuthResource;
-    private String partitionAuthResource;
-    private String userLevelAuthResource;
-
-
-    void setOpa(OpaHttpClient opa) {
-        this.opa = opa;
-    }
-
-
-    @Override
-    public void setMetaStoreHandler(IHMSHandler ihmsHandler) {
-
-    }
-
-    @Override
-    public void authorizeAuthorizationApiInvocation() throws AuthorizationException {
-        // No implementation needed
-    }
-
-    @Override
-    public void init(Configuration configuration) {
-        this.config = requireNonNull(configuration, "Configuration is null");
-    }
-
-    @Override
-    public HiveAuthenticationProvider getAuthenticator() {
-        return this.authenticationProvider;
-    }
-
-    @Override
-    public void setAuthenticator(HiveAuthenticationProvider hiveAuthenticationProvider) {
-        this.authenticationProvider = requireNonNull(hiveAuthenticationProvider, "HiveAuthenticationProvider is null");
-        LOG.trace("Setting authenticator to: {}", hiveAuthenticationProvider);
-        LOG.trace("User requesting auth: {}", hiveAuthenticationProvider.getUserName());
-        LOG.trace("Group requesting auth: {}", hiveAuthenticationProvider.getGroupNames());
-    }
-
-    @Override
-    public void authorizeDbLevelOperations(Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv,
-                                           Collection<ReadEntity> inputs, Collection<WriteEntity> outputs) throws HiveException, AuthorizationException {
-        LOG.debug("Requesting authorization (user level): readRequiredPriv={}, writeRequiredPriv={}",
-                Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
-
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("readRequiredPriv", readRequiredPriv);
-        parameters.put("writeRequiredPriv", writeRequiredPriv);
-        parameters.put("inputs", inputs);
-        parameters.put("outputs", outputs);
-
-        this.checkOpaAuthorization(this.userLevelAuthResource, parameters);
-    }
-
-    @Override
-    // Authorization privileges against a database object.
-    public void authorize(Database db, Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) throws HiveException, AuthorizationException {
-        LOG.debug("Requesting authorization (database): database={}, readRequiredPriv= {}, writeRequiredPriv= {}",
-                db.getName(), Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
-
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("database", db);
-        parameters.put("readRequiredPriv", readRequiredPriv);
-        parameters.put("writeRequiredPriv", writeRequiredPriv);
-
-        this.checkOpaAuthorization(this.databaseAuthResource, parameters);
-    }
-
-    @Override
-    // Authorization privileges against a hive table object.
-    public void authorize(Table table, Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) throws HiveException, AuthorizationException {
-        LOG.debug("Requesting authorization (table): table={}, readRequiredPriv= {}, writeRequiredPriv= {}",
-                table, Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
-
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("table", table.getTTable());
-        parameters.put("readRequiredPriv", readRequiredPriv);
-        parameters.put("writeRequiredPriv", writeRequiredPriv);
-
-        this.checkOpaAuthorization(this.tableAuthResource, parameters);
-    }
-
-    @Override
-    // Authorization privileges against a hive partition object.
-    public void authorize(Partition part, Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) throws HiveException, AuthorizationException {
-        LOG.debug("Requesting authorization (partition): part={}, readRequiredPriv={}, writeRequiredPriv={}",
-                part, Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
-
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("partition", part);
-        parameters.put("readRequiredPriv", readRequiredPriv);
-        parameters.put("writeRequiredPriv", writeRequiredPriv);
-
-        this.checkOpaAuthorization(this.partitionAuthResource, parameters);
-    }
-
-    @Override
-    // Authorization privileges against a list of columns.
-    public void authorize(Table table, Partition part, List<String> columns, Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) throws HiveException, AuthorizationException {
-        LOG.debug("Requesting authorization (columns): table= {}, part={}, columns={}, readRequiredPriv={}, writeRequiredPriv={}",
-                table, part, columns, Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
-
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("table", table.getTTable());
-        parameters.put("partition", part);
-        parameters.put("columns", columns);
-        parameters.put("readRequiredPriv", readRequiredPriv);
-        parameters.put("writeRequiredPriv", writeRequiredPriv);
-
-        this.checkOpaAuthorization(this.columnAuthResource, parameters);
-    }
-
-    @Override
-    public HivePolicyProvider getHivePolicyProvider() {
-        return null;
-    }
-
-    @Override
-    public void setConf(Configuration configuration) {
-        this.config = requireNonNull(configuration, "Configuration is null");
-        String configOpaBaseEndpoint = System.getenv().getOrDefault("OPA_BASE_ENDPOINT", configuration.get("com.bosch.bdps.opa.authorization.base.endpoint"));
-        String opaBaseEndpoint = requireNonNull(configOpaBaseEndpoint, "OPA_BASE_ENDPOINT is not set");
-
-        this.tableAuthResource = this.getPolicyUrl("table");
-        this.databaseAuthResource = this.getPolicyUrl("database");
-        this.columnAuthResource = this.getPolicyUrl("column");
-        this.partitionAuthResource = this.getPolicyUrl("partition");
-        this.userLevelAuthResource = this.getPolicyUrl("user");
-
-        this.opa = new OpaHttpClient(opaBaseEndpoint);
-    }
-
-    private String getPolicyUrl(String type) {
-        String endpoint = System.getenv().getOrDefault("OPA_POLICY_URL_" + type.toUpperCase(),
-                this.config.get("com.bosch.bdps.opa.authorization.policy.url." + type.toLowerCase(), "hms/" + type.toLowerCase() + "_allow"));
-
-        LOG.debug("Setting endpoint for type={} to: {}", type, endpoint);
-        return endpoint;
-    }
-
-    @Override
-    public Configuration getConf() {
-        return this.config;
-    }
-
-    private void checkOpaAuthorization(String path, Map<String, Object> input) throws AuthorizationException, HiveException {
-        // Construct request body. Encapsulate "identity", "resource" and "privileges"
-        // so they can be easier used in the opa rego rules.
-        Map<String, Object> identityMap = new HashMap<>();
-        identityMap.put("username", this.authenticationProvider.getUserName());
-        identityMap.put("groups", this.authenticationProvider.getGroupNames());
-
-        // If keys are not defined, HashMap.get(...) returns null.
-        // This ensures that each and every key is present in the request.
-        Map<String, Object> resourceMap = new HashMap<>();
-        resourceMap.put("database", input.get("database"));
-        resourceMap.put("table", input.get("table"));
-        resourceMap.put("partition", input.get("partition"));
-        resourceMap.put("columns", input.get("columns"));
-
-        Map<String, Object> privilegeMap = new HashMap<>();
-        privilegeMap.put("readRequiredPriv", input.get("readRequiredPriv"));
-        privilegeMap.put("writeRequiredPriv", input.get("writeRequiredPriv"));
-        privilegeMap.put("inputs", input.get("inputs"));
-        privilegeMap.put("outputs", input.get("outputs"));
-
-        Map<String, Object> finalRequest = new HashMap<>();
-        finalRequest.put("identity", identityMap);
-        finalRequest.put("resources", resourceMap);
-        finalRequest.put("privileges", privilegeMap);
-
-        boolean allowed;
-
-        requireNonNull(opa, "OPA client is not initialized");
-        try {
-            allowed = this.opa.check(path, finalRequest);
-        } catch (Exception e) {
-            LOG.error("Exception while making request against OPA: {}", e.getMessage());
-            throw new HiveException("Error during OPA authorization", e);
-        }
-
-        LOG.debug("Result from OPA: {}", allowed);
-
-        if (!allowed) {
-            throw new AuthorizationException("Request denied due to " + path + " authorization policy.");
-        }
-    }
-
-    // Minimal OPA HTTP client implementation
-    public static class OpaHttpClient {
-        private final String baseUrl;
-        private final ObjectMapper objectMapper = new ObjectMapper();
-
-        public OpaHttpClient(String baseUrl) {
-            this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
-        }
-
-        public boolean check(String path, Map<String, Object> input) throws Exception {
-            String url = baseUrl + path;
-            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-            String json = objectMapper.writeValueAsString(Collections.singletonMap("input", input));
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-            int code = conn.getResponseCode();
-            if (code != 200) {
-                throw new RuntimeException("OPA returned non-200: " + code);
-            }
-            JsonNode node = objectMapper.readTree(conn.getInputStream());
-            JsonNode result = node.get("result");
-            if (result == null || !result.isBoolean()) {
-                LOG.debug(node.toPrettyString());
-                throw new RuntimeException("OPA response missing boolean 'result'");
-            }
-            return result.asBoolean();
-        }
-    }
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.metastore.IHMSHandler;
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.ql.hooks.Entity;
+import org.apache.hadoop.hive.ql.hooks.ReadEntity;
+import org.apache.hadoop.hive.ql.hooks.WriteEntity;
+import org.apache.hadoop.hive.ql.metadata.AuthorizationException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.metadata.Partition;
+import org.apache.hadoop.hive.ql.metadata.Table;
+import org.apache.hadoop.hive.ql.security.HiveAuthenticationProvider;
+import org.apache.hadoop.hive.ql.security.authorization.HiveMetastoreAuthorizationProvider;
+import org.apache.hadoop.hive.ql.security.authorization.Privilege;
+import org.apache.hadoop.hive.ql.security.authorization.plugin.HivePolicyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.security.GeneralSecurityException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The class OpaBasedAuthorizationProvider is responsible for authorizing requests
+ */
+public class OpaBasedAuthorizationProvider implements HiveMetastoreAuthorizationProvider {
+
+    public static final Logger LOG = LoggerFactory.getLogger(OpaBasedAuthorizationProvider.class);
+    private static final String CONFIG_PREFIX = "com.bosch.bdps.opa.authorization.";
+    private static final String UNIX_SOCKET_SCHEME = "http+unix";
+
+
+    private HiveAuthenticationProvider authenticationProvider;
+    private Configuration config;
+    private OpaHttpClient opa;
+    private String opaBaseEndpoint;
+    // HMS creates one provider per handler thread, so anything that has to see the load of
+    // the whole metastore, or is worth reusing across threads, belongs to the shared engine.
+    private AuthorizationEngine engine;
+    private AuthorizerSettings settings;
+    private long settingsGeneration;
+    private long rejectedGeneration = -1;
+
+    private String tableAuthResource;
+    private String columnAuthResource;
+    private String databaseAuthResource;
+    private String partitionAuthResource;
+    private String userLevelAuthResource;
+
+    private AdaptiveConcurrencyLimiter limiter;
+    private long limiterMaxWaitMillis;
+    private List<OpaRoute> routes = Collections.emptyList();
+    private AuthorizationBulkhead bulkhead;
+    private long bulkheadMaxWaitMillis;
+    private EntitlementIndexRefresher entitlements;
+    private ResidualPolicyCache residuals;
+    private ShadowEvaluator shadow;
+    private DecisionCache decisions;
+    private TablePrefetcher prefetcher;
+    private AuthorizerStatus status;
+    private boolean decomposeEntities;
+    private Map<String, List<String>> identityDimensions = Collections.emptyMap();
+    private boolean minimizeIdentity;
+    private boolean scopeEnabled;
+    private String combinedPath;
+    private DecisionFanOut fanOut;
+    private final AuthorizationScope.Evaluator deferredEvaluator = this::evaluateDeferred;
+
+    void setOpa(OpaHttpClient opa) {
+        this.opa = opa;
+    }
+
+    AdaptiveConcurrencyLimiter getLimiter() {
+        return this.limiter;
+    }
+
+    AuthorizationBulkhead getBulkhead() {
+        return this.bulkhead;
+    }
+
+    TablePrefetcher getPrefetcher() {
+        return this.prefetcher;
+    }
+
+    void setEntitlements(EntitlementIndexRefresher entitlements) {
+        this.entitlements = entitlements;
+    }
+
+    void setResiduals(ResidualPolicyCache residuals) {
+        this.residuals = residuals;
+    }
+
+    void setShadow(ShadowEvaluator shadow) {
+        this.shadow = shadow;
+    }
+
+
+    @Override
+    public void setMetaStoreHandler(IHMSHandler ihmsHandler) {
+
+    }
+
+    @Override
+    public void authorizeAuthorizationApiInvocation() throws AuthorizationException {
+        // No implementation needed
+    }
+
+    @Override
+    public void init(Configuration configuration) {
+        this.config = requireNonNull(configuration, "Configuration is null");
+    }
+
+    @Override
+    public HiveAuthenticationProvider getAuthenticator() {
+        return this.authenticationProvider;
+    }
+
+    @Override
+    public void setAuthenticator(HiveAuthenticationProvider hiveAuthenticationProvider) {
+        this.authenticationProvider = requireNonNull(hiveAuthenticationProvider, "HiveAuthenticationProvider is null");
+        LOG.trace("Setting authenticator to: {}", hiveAuthenticationProvider);
+        LOG.trace("User requesting auth: {}", hiveAuthenticationProvider.getUserName());
+        LOG.trace("Group requesting auth: {}", hiveAuthenticationProvider.getGroupNames());
+    }
+
+    @Override
+    public void authorizeDbLevelOperations(Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv,
+                                           Collection<ReadEntity> inputs, Collection<WriteEntity> outputs) throws HiveException, AuthorizationException {
+        LOG.debug("Requesting authorization (user level): readRequiredPriv={}, writeRequiredPriv={}",
+                Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("readRequiredPriv", readRequiredPriv);
+        parameters.put("writeRequiredPriv", writeRequiredPriv);
+
+        if (this.decomposeEntities && (!isNullOrEmpty(inputs) || !isNullOrEmpty(outputs))) {
+            this.checkEntities(parameters, inputs, outputs);
+            return;
+        }
+
+        parameters.put("inputs", inputs);
+        parameters.put("outputs", outputs);
+
+        this.checkOpaAuthorization("user", this.userLevelAuthResource, parameters);
+    }
+
+    // Decides each entity of an operation on its own, from a compact descriptor, so that its
+    // decision can be cached under the key of the entity. Cached decisions are reused, every
+    // other entity is sent to OPA in a request of its own; the operation is allowed if all
+    // its entities are.
+    private void checkEntities(Map<String, Object> parameters, Collection<ReadEntity> inputs,
+                               Collection<WriteEntity> outputs) throws HiveException, AuthorizationException {
+        this.refreshSettings();
+        String path = this.userLevelAuthResource;
+        Map<String, Object> identity = this.identity("user");
+        Map<String, Collection<? extends Entity>> entities = new LinkedHashMap<>();
+        entities.put("inputs", inputs);
+        entities.put("outputs", outputs);
+
+        Map<String, Map<String, Object>> uncached = new LinkedHashMap<>();
+        for (Map.Entry<String, Collection<? extends Entity>> direction : entities.entrySet()) {
+            for (Entity entity : direction.getValue() == null ? Collections.<Entity>emptyList() : direction.getValue()) {
+                Map<String, Object> descriptor = EntityDescriptors.describe(entity);
+                Map<String, Object> single = new HashMap<>(parameters);
+                single.put("inputs", Collections.emptyList());
+                single.put("outputs", Collections.emptyList());
+                single.put(direction.getKey(), Collections.singletonList(descriptor));
+                String key = decisionKey(path, identity, this.identityDimensions.get("user"),
+                        EntityDescriptors.key(direction.getKey(), descriptor),
+                        (Privilege[]) parameters.get("readRequiredPriv"), (Privilege[]) parameters.get("writeRequiredPriv"));
+                Boolean cached = this.decisions == null ? null : this.cachedDecision(key, path, buildRequest(identity, single), null);
+                if (cached == null) {
+                    uncached.put(key, single);
+                } else if (!cached) {
+                    LOG.debug("Entity {} denied by decision cache", descriptor);
+                    throw new AuthorizationException("Request denied due to " + path + " authorization policy.");
+                }
+            }
+        }
+        if (uncached.isEmpty()) {
+            LOG.debug("All entities allowed by decision cache");
+            return;
+        }
+
+        Map<String, PolicyDecision> decided = this.fanOut != null && uncached.size() > 1
+                ? this.decideInParallel(path, identity, uncached) : Collections.<String, PolicyDecision>emptyMap();
+        for (Map.Entry<String, PolicyDecision> decision : decided.entrySet()) {
+            if (!decision.getValue().isAllowed()) {
+                LOG.debug("Entity {} denied by OPA", uncached.get(decision.getKey()));
+                throw new AuthorizationException("Request denied due to " + path + " authorization policy.");
+            }
+        }
+        DecisionCache decisions = this.decisions;
+        for (Map.Entry<String, Map<String, Object>> entity : uncached.entrySet()) {
+            PolicyDecision decision = decided.get(entity.getKey());
+            if (decision == null) {
+                // Also entities whose parallel request failed, so that the error is raised.
+                decision = this.checkOpaAuthorization("user", path, entity.getValue());
+            }
+            if (decisions != null && decision != null) {
+                decisions.put(entity.getKey(), decision);
+            }
+        }
+    }
+
+    // Sends the requests of the entities at the same time. Entities whose request failed, or
+    // was cancelled after a deny, are missing from the result.
+    private Map<String, PolicyDecision> decideInParallel(String path, Map<String, Object> identity,
+                                                         Map<String, Map<String, Object>> entities) throws HiveException {
+        String principal = this.authenticationProvider.getUserName();
+        ShadowEvaluator shadow = this.shadow;
+        Map<String, PolicyDecision> decided = new ConcurrentHashMap<>();
+        Map<String, Callable<Boolean>> queries = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Object>> entity : entities.entrySet()) {
+            Map<String, Object> request = buildRequest(identity, entity.getValue());
+            queries.put(entity.getKey(), () -> {
+                PolicyDecision decision = this.queryOpa("user", path, request, principal, null);
+                decided.put(entity.getKey(), decision);
+                if (shadow != null) {
+                    shadow.submit("user", request, decision.isAllowed());
+                }
+                return decision.isAllowed();
+            });
+        }
+        try {
+            this.fanOut.evaluate(queries);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HiveException("Interrupted while deciding entities", e);
+        }
+        return decided;
+    }
+
+    @Override
+    // Authorization privileges against a database object.
+    public void authorize(Database db, Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) throws HiveException, AuthorizationException {
+        LOG.debug("Requesting authorization (database): database={}, readRequiredPriv= {}, writeRequiredPriv= {}",
+                db.getName(), Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("database", db);
+        parameters.put("readRequiredPriv", readRequiredPriv);
+        parameters.put("writeRequiredPriv", writeRequiredPriv);
+
+        this.checkOpaAuthorization("database", this.databaseAuthResource, parameters);
+    }
+
+    @Override
+    // Authorization privileges against a hive table object.
+    public void authorize(Table table, Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) throws HiveException, AuthorizationException {
+        LOG.debug("Requesting authorization (table): table={}, readRequiredPriv= {}, writeRequiredPriv= {}",
+                table, Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("table", table.getTTable());
+        parameters.put("readRequiredPriv", readRequiredPriv);
+        parameters.put("writeRequiredPriv", writeRequiredPriv);
+
+        this.checkOpaAuthorization("table", this.tableAuthResource, parameters);
+    }
+
+    @Override
+    // Authorization privileges against a hive partition object.
+    public void authorize(Partition part, Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) throws HiveException, AuthorizationException {
+        LOG.debug("Requesting authorization (partition): part={}, readRequiredPriv={}, writeRequiredPriv={}",
+                part, Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("partition", part);
+        parameters.put("readRequiredPriv", readRequiredPriv);
+        parameters.put("writeRequiredPriv", writeRequiredPriv);
+
+        this.checkOpaAuthorization("partition", this.partitionAuthResource, parameters);
+    }
+
+    @Override
+    // Authorization privileges against a list of columns.
+    public void authorize(Table table, Partition part, List<String> columns, Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) throws HiveException, AuthorizationException {
+        LOG.debug("Requesting authorization (columns): table= {}, part={}, columns={}, readRequiredPriv={}, writeRequiredPriv={}",
+                table, part, columns, Arrays.toString(readRequiredPriv), Arrays.toString(writeRequiredPriv));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("table", table.getTTable());
+        parameters.put("partition", part);
+        parameters.put("columns", columns);
+        parameters.put("readRequiredPriv", readRequiredPriv);
+        parameters.put("writeRequiredPriv", writeRequiredPriv);
+
+        this.checkOpaAuthorization("column", this.columnAuthResource, parameters);
+    }
+
+    @Override
+    public HivePolicyProvider getHivePolicyProvider() {
+        return null;
+    }
+
+    @Override
+    public void setConf(Configuration configuration) {
+        this.config = requireNonNull(configuration, "Configuration is null");
+        String reloadFile = this.getSetting("reload.file", null);
+        if (reloadFile != null) {
+            long intervalMillis = Long.parseLong(this.getSetting("reload.interval.seconds", "10")) * 1000L;
+            RuntimeSettings.get().watch(new File(reloadFile), intervalMillis);
+        }
+        this.configure();
+        if (Boolean.parseBoolean(this.getSetting("warmup.enabled", "false"))) {
+            this.startWarmUp();
+        }
+    }
+
+    /**
+     * Warms up the authorizer of the configured endpoint and waits for it, at most
+     * warmup.timeout.ms. Called by {@link OpaAuthorizationPreEventListener} when the
+     * metastore starts; Hive creates the providers of a handler thread only on its first
+     * call, so they just share the warm-up and never wait for it.
+     */
+    public static void warmUp(Configuration configuration) {
+        OpaBasedAuthorizationProvider provider = new OpaBasedAuthorizationProvider();
+        provider.config = requireNonNull(configuration, "Configuration is null");
+        if (!Boolean.parseBoolean(provider.getSetting("warmup.enabled", "false"))) {
+            return;
+        }
+        provider.setConf(configuration);
+        long timeoutMillis = Long.parseLong(provider.getSetting("warmup.timeout.ms", "10000"));
+        try {
+            provider.startWarmUp().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.warn("Authorizer warm-up for {} did not finish within {} ms, continuing", provider.opaBaseEndpoint, timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.warn("Authorizer warm-up for {} failed: {}", provider.opaBaseEndpoint, e.getCause().getMessage());
+        }
+    }
+
+    // Starts warming up serializers, connections and, optionally, the policies, once per
+    // endpoint, and returns the running warm-up.
+    private CompletableFuture<Boolean> startWarmUp() {
+        int connections = Integer.parseInt(this.getSetting("warmup.connections", "4"));
+        Map<String, String> policyUrls = new HashMap<>();
+        if (Boolean.parseBoolean(this.getSetting("warmup.synthetic.requests", "false"))) {
+            policyUrls.putAll(this.settings.policyUrls);
+        }
+        AuthorizerStatus status = this.status;
+        OpaHttpClient client = clientOf(this.engine, this.opaBaseEndpoint,
+                tlsFor(this.engine, this.opaBaseEndpoint, this.settings));
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Boolean> warmup = this.engine.component(CompletableFuture.class, "warmup", () -> {
+            if (status != null) {
+                status.setReady(false);
+            }
+            return new AuthorizerWarmup(client, connections, policyUrls).start()
+                    .whenComplete((warm, e) -> {
+                        if (status != null) {
+                            status.setReady(true);
+                        }
+                    });
+        });
+        return warmup;
+    }
+
+    // Applies the current settings. They are all read and validated first, and components
+    // that can fail to be created, e.g. for an unreadable key store, are created before
+    // anything is changed, so a bad value keeps the previous settings in place. Shared
+    // components that already exist are adjusted in place, so connections, cached residuals
+    // and measurements survive a reload.
+    private void configure() {
+        long generation = RuntimeSettings.get().getGeneration();
+        AuthorizerSettings settings = new AuthorizerSettings(this::getSetting);
+        AuthorizationEngine engine = AuthorizationEngine.forEndpoint(settings.baseEndpoint);
+        Map<String, TlsSocketFactory> tls = new HashMap<>();
+        tls.put(settings.baseEndpoint, tlsFor(engine, settings.baseEndpoint, settings));
+        for (AuthorizerSettings.Route route : settings.routes) {
+            tls.put(route.endpoint, tlsFor(engine, route.endpoint, settings));
+        }
+        if (settings.shadowEnabled) {
+            tls.put(settings.shadowEndpoint, tlsFor(engine, settings.shadowEndpoint, settings));
+        }
+
+        OpaHttpClient client = clientOf(engine, settings.baseEndpoint, tls.get(settings.baseEndpoint));
+        if (this.opa == null || !settings.baseEndpoint.equals(this.opaBaseEndpoint)) {
+            this.opa = client;
+        }
+        this.engine = engine;
+        this.opaBaseEndpoint = settings.baseEndpoint;
+        this.settings = settings;
+
+        this.tableAuthResource = settings.policyUrls.get("table");
+        this.databaseAuthResource = settings.policyUrls.get("database");
+        this.columnAuthResource = settings.policyUrls.get("column");
+        this.partitionAuthResource = settings.policyUrls.get("partition");
+        this.userLevelAuthResource = settings.policyUrls.get("user");
+
+        if (settings.metricsSampleRate > 0.0) {
+            double sampleRate = settings.metricsSampleRate;
+            OpaMetrics metrics = engine.component(OpaMetrics.class, "", () -> new OpaMetrics(sampleRate));
+            metrics.setSampleRate(sampleRate);
+            this.opa.setMetrics(metrics);
+        } else {
+            this.opa.setMetrics(null);
+        }
+
+        this.opa.setRetryPolicy(retryPolicyOf(engine, settings));
+        this.limiter = limiterOf(engine, settings);
+        this.limiterMaxWaitMillis = settings.limiterMaxWaitMillis;
+
+        List<OpaRoute> routes = new ArrayList<>();
+        for (AuthorizerSettings.Route route : settings.routes) {
+            routes.add(createRoute(route, settings, tls.get(route.endpoint)));
+        }
+        this.routes = routes;
+
+        if (settings.bulkheadEnabled) {
+            this.bulkhead = engine.component(AuthorizationBulkhead.class, "",
+                    () -> new AuthorizationBulkhead(settings.bulkheadLimits));
+            for (Map.Entry<String, Integer> limit : settings.bulkheadLimits.entrySet()) {
+                this.bulkhead.setLimit(limit.getKey(), limit.getValue());
+            }
+            this.bulkheadMaxWaitMillis = settings.bulkheadMaxWaitMillis;
+        } else {
+            this.bulkhead = null;
+        }
+
+        // One refresher per document; those of documents no longer configured, e.g. after
+        // the index was turned off or moved, are stopped.
+        String entitlementsPath = settings.entitlementsEnabled ? settings.entitlementsPath : null;
+        for (EntitlementIndexRefresher stale : engine.removeComponents(EntitlementIndexRefresher.class,
+                path -> !path.equals(entitlementsPath))) {
+            LOG.info("Stopping the refresh of the entitlement index of {}", this.opaBaseEndpoint);
+            stale.stop();
+        }
+        if (entitlementsPath != null) {
+            long refreshMillis = settings.entitlementsRefreshMillis;
+            this.entitlements = engine.component(EntitlementIndexRefresher.class, entitlementsPath, () -> {
+                EntitlementIndexRefresher refresher = new EntitlementIndexRefresher(client, entitlementsPath, refreshMillis);
+                refresher.start();
+                return refresher;
+            });
+            this.entitlements.setInterval(refreshMillis);
+        } else {
+            this.entitlements = null;
+        }
+
+        if (settings.partialEvalEnabled) {
+            this.residuals = engine.component(ResidualPolicyCache.class, "",
+                    () -> new ResidualPolicyCache(client, settings.partialEvalTtlMillis, settings.partialEvalMaxEntries));
+            this.residuals.resize(settings.partialEvalTtlMillis, settings.partialEvalMaxEntries);
+        } else {
+            this.residuals = null;
+        }
+
+        // The store, its off-heap budget and the refresh threads are fixed once the cache exists.
+        if (settings.cacheEnabled) {
+            this.decisions = engine.component(DecisionCache.class, "", () -> new DecisionCache(
+                    settings.cacheOffHeap ? new OffHeapDecisionStore(settings.cacheOffHeapBytes)
+                            : new HeapDecisionStore(settings.cacheMaxEntries),
+                    settings.cacheTtlMillis, settings.cacheRefreshAhead, settings.cacheRefreshThreads));
+            this.decisions.resize(settings.cacheTtlMillis, settings.cacheRefreshAhead);
+            this.decisions.getStore().resize(settings.cacheMaxEntries);
+        } else {
+            this.decisions = null;
+        }
+
+        // So are the threads and the queue of the prefetcher.
+        if (this.decisions != null && settings.prefetchEnabled) {
+            DecisionCache decisions = this.decisions;
+            this.prefetcher = engine.component(TablePrefetcher.class, "", () -> new TablePrefetcher(
+                    decisions, settings.prefetchMaxTables, settings.prefetchMinShare, settings.prefetchTrackedTables,
+                    settings.prefetchMaxDatabases, settings.prefetchThreads, settings.prefetchQueueSize));
+            this.prefetcher.update(settings.prefetchMaxTables, settings.prefetchMinShare,
+                    settings.prefetchTrackedTables, settings.prefetchMaxDatabases);
+        } else {
+            this.prefetcher = null;
+        }
+
+        this.identityDimensions = settings.identityDimensions;
+        this.minimizeIdentity = settings.minimizeIdentity;
+        this.decomposeEntities = settings.decomposeEntities;
+        this.scopeEnabled = settings.scopeEnabled;
+        this.combinedPath = settings.combinedPath;
+        // The kind of executor is fixed once the fan-out exists.
+        if (settings.fanOutEnabled) {
+            this.fanOut = engine.component(DecisionFanOut.class, "", () -> new DecisionFanOut(
+                    settings.fanOutExecutor, settings.fanOutThreads, settings.fanOutParallelism));
+            this.fanOut.update(settings.fanOutParallelism, settings.fanOutThreads);
+        } else {
+            this.fanOut = null;
+        }
+
+        if (settings.shadowEnabled) {
+            String shadowEndpoint = settings.shadowEndpoint;
+            TlsSocketFactory shadowTls = tls.get(shadowEndpoint);
+            this.shadow = engine.component(ShadowEvaluator.class, shadowEndpoint, () -> new ShadowEvaluator(
+                    new OpaHttpClient(shadowEndpoint, shadowTls), settings.shadowPolicyUrls, settings.shadowSampleRate,
+                    settings.shadowThreads, settings.shadowQueueSize));
+            this.shadow.update(settings.shadowPolicyUrls, settings.shadowSampleRate, settings.shadowThreads);
+            this.shadow.getClient().setTls(shadowTls);
+        } else {
+            this.shadow = null;
+        }
+
+        if (settings.jmxEnabled) {
+            String opaBaseEndpoint = settings.baseEndpoint;
+            String probePath = this.tableAuthResource;
+            this.status = engine.component(AuthorizerStatus.class, "",
+                    () -> new AuthorizerStatus(opaBaseEndpoint, client, probePath).register());
+            this.status.attach(this.limiter, this.decisions, this.shadow, this.tableAuthResource);
+        } else {
+            this.status = null;
+        }
+        this.settingsGeneration = generation;
+    }
+
+    private static RetryPolicy retryPolicyOf(AuthorizationEngine engine, AuthorizerSettings settings) {
+        if (!settings.retryEnabled) {
+            return null;
+        }
+        RetryPolicy retries = engine.component(RetryPolicy.class, "", () -> new RetryPolicy(
+                settings.retryMax, settings.retryBackoffMillis, settings.retryBackoffMaxMillis,
+                settings.retryDeadlineMillis, settings.retryBudgetRatio, settings.retryBudgetReserve));
+        retries.update(settings.retryMax, settings.retryBackoffMillis, settings.retryBackoffMaxMillis,
+                settings.retryDeadlineMillis, settings.retryBudgetRatio, settings.retryBudgetReserve);
+        return retries;
+    }
+
+    private static AdaptiveConcurrencyLimiter limiterOf(AuthorizationEngine engine, AuthorizerSettings settings) {
+        if (!settings.limiterEnabled) {
+            return null;
+        }
+        AdaptiveConcurrencyLimiter limiter = engine.component(AdaptiveConcurrencyLimiter.class, "",
+                () -> new AdaptiveConcurrencyLimiter(settings.limiterInitial, 1, settings.limiterMax));
+        limiter.setMaxLimit(settings.limiterMax);
+        return limiter;
+    }
+
+    // The endpoint of a route has an engine of its own, so routes to different endpoints
+    // share neither connections nor concurrency limit, while routes to the same one do.
+    private static OpaRoute createRoute(AuthorizerSettings.Route route, AuthorizerSettings settings, TlsSocketFactory tls) {
+        AuthorizationEngine routeEngine = AuthorizationEngine.forEndpoint(route.endpoint);
+        OpaHttpClient client = clientOf(routeEngine, route.endpoint, tls);
+        client.setRetryPolicy(retryPolicyOf(routeEngine, settings));
+        LOG.debug("Routing databases {} of catalogs {} to {}", route.databases, route.catalogs, route.endpoint);
+        return new OpaRoute(route.name, route.databases, route.catalogs, route.policyUrls, client,
+                limiterOf(routeEngine, settings));
+    }
+
+    // Returns the first route matching the database of a check, or null for the base endpoint.
+    private OpaRoute route(Map<String, Object> input) {
+        if (this.routes.isEmpty()) {
+            return null;
+        }
+        String catalog = null;
+        String database = null;
+        Object db = input.get("database");
+        Object table = input.get("table");
+        Object partition = input.get("partition");
+        if (db instanceof Database) {
+            catalog = ((Database) db).getCatalogName();
+            database = ((Database) db).getName();
+        } else if (table instanceof org.apache.hadoop.hive.metastore.api.Table) {
+            catalog = ((org.apache.hadoop.hive.metastore.api.Table) table).getCatName();
+            database = ((org.apache.hadoop.hive.metastore.api.Table) table).getDbName();
+        } else if (partition instanceof Partition && ((Partition) partition).getTable() != null) {
+            catalog = ((Partition) partition).getTable().getTTable().getCatName();
+            database = ((Partition) partition).getTable().getDbName();
+        }
+        for (OpaRoute route : this.routes) {
+            if (route.matches(catalog, database)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    // The engine's client of an endpoint, shared by all components and providers.
+    private static OpaHttpClient clientOf(AuthorizationEngine engine, String endpoint, TlsSocketFactory tls) {
+        OpaHttpClient client = engine.component(OpaHttpClient.class, "", () -> new OpaHttpClient(endpoint, tls));
+        client.setTls(tls);
+        return client;
+    }
+
+    // Connections to an https endpoint are created from one socket factory per set of tls.*
+    // settings, so changed settings take effect with the next reload while unchanged ones
+    // keep the factory and its cached sessions. Store files changed in place are not reloaded.
+    private static TlsSocketFactory tlsFor(AuthorizationEngine engine, String endpoint, AuthorizerSettings settings) {
+        if (!endpoint.toLowerCase().startsWith("https:")) {
+            return null;
+        }
+        return engine.component(TlsSocketFactory.class, settings.tlsQualifier(), () -> {
+            try {
+                return new TlsSocketFactory(TlsSocketFactory.createContext(
+                        settings.tlsTrustStorePath, settings.tlsTrustStorePassword,
+                        settings.tlsKeyStorePath, settings.tlsKeyStorePassword, settings.tlsStoreType,
+                        settings.tlsSessionCacheSize, settings.tlsSessionTimeoutSeconds),
+                        settings.tlsProtocols, settings.tlsCipherSuites);
+            } catch (GeneralSecurityException | IOException e) {
+                throw new IllegalStateException("Failed to set up TLS for " + endpoint + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    // Resolves com.bosch.bdps.opa.authorization.<name>. Runtime overrides take precedence,
+    // then environment (OPA_<NAME>), then Hive configuration.
+    private String getSetting(String name, String defaultValue) {
+        String override = RuntimeSettings.get().get(name);
+        if (override != null) {
+            return override;
+        }
+        return System.getenv().getOrDefault("OPA_" + name.toUpperCase().replace('.', '_'),
+                this.config.get(CONFIG_PREFIX + name, defaultValue));
+    }
+
+    @Override
+    public Configuration getConf() {
+        return this.config;
+    }
+
+    // Returns the decision with the hints of its policy, or null if there are no hints to go by
+    // because the check was answered by the scope or deferred.
+    private PolicyDecision checkOpaAuthorization(String type, String path, Map<String, Object> input) throws AuthorizationException, HiveException {
+        if (this.refreshSettings()) {
+            path = this.settings.policyUrls.get(type);
+        }
+        OpaRoute route = this.route(input);
+        if (route != null) {
+            path = route.getPolicyUrl(type, path);
+        }
+        AuthorizationEvent event = JfrSupport.AVAILABLE ? AuthorizationEvent.start() : null;
+        String source = "error";
+        String cacheOutcome = "disabled";
+        Boolean decision = null;
+        try {
+            // The entitlement index and residual policies come from the base endpoint.
+            if (route == null && this.isGrantedByEntitlements(type, input)) {
+                LOG.debug("Granted {} by entitlement index", path);
+                source = "entitlements";
+                decision = true;
+                return PolicyDecision.of(true);
+            }
+
+            Map<String, Object> identityMap = this.identity(type);
+            Map<String, Object> finalRequest = buildRequest(identityMap, input);
+
+            AuthorizationScope scope = this.scopeEnabled ? AuthorizationScope.current() : null;
+            String key = this.decisions == null && scope == null ? null : this.decisionKey(type, path, identityMap, input);
+            String scopeKey = scope == null ? null : key;
+            Boolean memo = scopeKey == null ? null : scope.get(scopeKey);
+            if (memo != null) {
+                LOG.debug("Result from authorization scope: {}", memo);
+                source = "scope";
+                decision = memo;
+                if (!memo) {
+                    throw new AuthorizationException("Request denied due to " + path + " authorization policy.");
+                }
+                return null;
+            }
+
+            String cacheKey = this.decisions == null ? null : key;
+            Boolean cached = cacheKey == null ? null : this.cachedDecision(cacheKey, path, finalRequest, route);
+            if (this.decisions != null) {
+                cacheOutcome = cacheKey == null ? "uncacheable" : cached == null ? "miss" : "hit";
+            }
+            if (cached != null) {
+                LOG.debug("Result from decision cache: {}", cached);
+                source = "cache";
+                decision = cached;
+                if (!cached) {
+                    throw new AuthorizationException("Request denied due to " + path + " authorization policy.");
+                }
+                return PolicyDecision.of(true);
+            }
+
+            Boolean local = this.residuals == null || route != null ? null : this.residuals.evaluate(path, identityMap, finalRequest);
+            if (local != null) {
+                LOG.debug("Result from residual policy: {}", local);
+                source = "residual";
+                decision = local;
+                if (!local) {
+                    throw new AuthorizationException("Request denied due to " + path + " authorization policy.");
+                }
+                return PolicyDecision.of(true);
+            }
+
+            // The combined decisions document is evaluated by the base endpoint.
+            boolean deferrable = this.combinedPath != null ? route == null : this.fanOut != null;
+            if (scopeKey != null && deferrable && scope.isCollecting()) {
+                LOG.debug("Deferring {} to the end of the metastore call", path);
+                source = "deferred";
+                scope.defer(scopeKey, new AuthorizationScope.Check(type, path, finalRequest, route), this.deferredEvaluator);
+                return null;
+            }
+
+            PolicyDecision answer = this.queryOpa(type, path, finalRequest, this.authenticationProvider.getUserName(), route);
+            boolean allowed = answer.isAllowed();
+            source = "opa";
+            decision = allowed;
+
+            if (cacheKey != null) {
+                this.decisions.put(cacheKey, answer);
+            }
+            if (scopeKey != null) {
+                scope.put(scopeKey, allowed);
+            }
+
+            if (this.shadow != null) {
+                this.shadow.submit(type, finalRequest, allowed);
+            }
+
+            LOG.debug("Result from OPA: {}", answer);
+
+            if (!allowed) {
+                throw new AuthorizationException("Request denied due to " + path + " authorization policy.");
+            }
+            return answer;
+        } finally {
+            if (this.prefetcher != null && decision != null) {
+                this.prefetchAfter(type, input, route, decision);
+            }
+            if (event != null && event.finish()) {
+                event.record(path, type, this.authenticationProvider.getUserName(), this.resourceKey(type, input),
+                        source, cacheOutcome, decision);
+            }
+        }
+    }
+
+    // Evaluates the checks deferred during a metastore call. Checks are keyed like cached
+    // decisions, so the key of a check is also its cache key.
+    private Map<String, Boolean> evaluateDeferred(Map<String, AuthorizationScope.Check> checks) throws Exception {
+        Map<String, PolicyDecision> answered = this.combinedPath != null
+                ? this.evaluateCombined(checks) : this.evaluateInParallel(checks);
+        Map<String, Boolean> allowed = new HashMap<>();
+        for (Map.Entry<String, PolicyDecision> decision : answered.entrySet()) {
+            AuthorizationScope.Check check = checks.get(decision.getKey());
+            allowed.put(decision.getKey(), decision.getValue().isAllowed());
+            if (this.decisions != null) {
+                this.decisions.put(decision.getKey(), decision.getValue());
+            }
+            if (this.shadow != null) {
+                this.shadow.submit(check.type, check.request, decision.getValue().isAllowed());
+            }
+        }
+        return allowed;
+    }
+
+    // Sends the checks to OPA one by one, but at the same time.
+    // The fan-out only needs to know whether a check was allowed, the hints are kept aside.
+    private Map<String, PolicyDecision> evaluateInParallel(Map<String, AuthorizationScope.Check> checks) throws Exception {
+        String principal = this.authenticationProvider.getUserName();
+        Map<String, PolicyDecision> hinted = new ConcurrentHashMap<>();
+        Map<String, Callable<Boolean>> queries = new LinkedHashMap<>();
+        for (Map.Entry<String, AuthorizationScope.Check> entry : checks.entrySet()) {
+            AuthorizationScope.Check check = entry.getValue();
+            queries.put(entry.getKey(), () -> {
+                PolicyDecision answer = this.queryOpa(check.type, check.path, check.request, principal, check.route);
+                hinted.put(entry.getKey(), answer);
+                return answer.isAllowed();
+            });
+        }
+        Map<String, Boolean> decided = this.fanOut.evaluate(queries);
+        Map<String, PolicyDecision> answered = new HashMap<>();
+        for (String key : decided.keySet()) {
+            answered.put(key, hinted.get(key));
+        }
+        LOG.debug("Result from parallel checks: {} of {} checks decided", answered.size(), checks.size());
+        return answered;
+    }
+
+    // Sends the checks to the combined decisions document in one request.
+    private Map<String, PolicyDecision> evaluateCombined(Map<String, AuthorizationScope.Check> checks) throws Exception {
+        List<String> keys = new ArrayList<>(checks.keySet());
+        List<Map<String, Object>> queries = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            AuthorizationScope.Check check = checks.get(keys.get(i));
+            Map<String, Object> query = new HashMap<>();
+            query.put("id", String.valueOf(i));
+            query.put("path", check.path);
+            query.put("input", check.request);
+            queries.add(query);
+        }
+
+        String path = this.combinedPath;
+        requireNonNull(opa, "OPA client is not initialized");
+        // The request takes a slot in the bulkhead of every type it decides, in a fixed
+        // order, so two combined requests never wait for each other's slots.
+        Set<String> involved = new HashSet<>();
+        for (AuthorizationScope.Check check : checks.values()) {
+            involved.add(check.type);
+        }
+        String principal = this.authenticationProvider.getUserName();
+        List<String> acquired = new ArrayList<>();
+        Map<String, PolicyDecision> results;
+        try {
+            for (String type : AuthorizerSettings.POLICY_TYPES) {
+                if (involved.contains(type)) {
+                    this.acquireBulkhead(type, principal);
+                    acquired.add(type);
+                }
+            }
+            this.acquireLimiter(this.limiter, path);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                results = this.opa.checkAll(path, queries);
+                failed = false;
+                if (this.status != null) {
+                    this.status.recordSuccess();
+                }
+            } catch (Exception e) {
+                if (this.status != null) {
+                    this.status.recordFailure(e);
+                }
+                throw e;
+            } finally {
+                if (this.limiter != null) {
+                    this.limiter.release(System.nanoTime() - start, failed);
+                }
+            }
+        } finally {
+            if (this.bulkhead != null) {
+                for (String type : acquired) {
+                    this.bulkhead.release(type, principal);
+                }
+            }
+        }
+
+        Map<String, PolicyDecision> answered = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            PolicyDecision decision = results.get(String.valueOf(i));
+            if (decision != null) {
+                answered.put(keys.get(i), decision);
+            }
+        }
+        LOG.debug("Result from combined query {}: {} of {} checks decided", path, answered.size(), keys.size());
+        return answered;
+    }
+
+    // Sends one check to OPA, within the bulkhead of its type and the concurrency limit of
+    // the endpoint of its route. Only the base endpoint reports its health.
+    private PolicyDecision queryOpa(String type, String path, Map<String, Object> request, String principal,
+                                    OpaRoute route) throws HiveException {
+        OpaHttpClient client = route == null ? this.opa : route.getClient();
+        AdaptiveConcurrencyLimiter limiter = route == null ? this.limiter : route.getLimiter();
+        AuthorizerStatus status = route == null ? this.status : null;
+        requireNonNull(client, "OPA client is not initialized");
+        this.acquireBulkhead(type, principal);
+        try {
+            this.acquireLimiter(limiter, path);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                PolicyDecision decision = client.decide(path, request);
+                failed = false;
+                if (status != null) {
+                    status.recordSuccess();
+                }
+                return decision;
+            } catch (Exception e) {
+                if (status != null) {
+                    status.recordFailure(e);
+                }
+                // Note that OPAException usually wraps other exception types, in
+                // case you need to do more complex error handling.
+                LOG.error("Exception while making request against OPA: {}", e.getMessage());
+                throw new HiveException("Error during OPA authorization", e);
+            } finally {
+                if (limiter != null) {
+                    limiter.release(System.nanoTime() - start, failed);
+                }
+            }
+        } finally {
+            if (this.bulkhead != null) {
+                this.bulkhead.release(type, principal);
+            }
+        }
+    }
+
+    // With identity.minimize, OPA is only sent the parts of the identity its policy depends on.
+    private Map<String, Object> identity(String type) {
+        List<String> dimensions = this.minimizeIdentity ? this.identityDimensions.get(type) : AuthorizerSettings.IDENTITY_DIMENSIONS;
+        Map<String, Object> identityMap = new HashMap<>();
+        if (dimensions.contains("username")) {
+            identityMap.put("username", this.authenticationProvider.getUserName());
+        }
+        if (dimensions.contains("groups")) {
+            identityMap.put("groups", this.authenticationProvider.getGroupNames());
+        }
+        return identityMap;
+    }
+
+    // Construct request body. Encapsulate "identity", "resource" and "privileges"
+    // so they can be easier used in the opa rego rules.
+    private static Map<String, Object> buildRequest(Map<String, Object> identityMap, Map<String, Object> input) {
+        // If keys are not defined, HashMap.get(...) returns null.
+        // This ensures that each and every key is present in the request.
+        Map<String, Object> resourceMap = new HashMap<>();
+        resourceMap.put("database", input.get("database"));
+        resourceMap.put("table", input.get("table"));
+        resourceMap.put("partition", input.get("partition"));
+        resourceMap.put("columns", input.get("columns"));
+
+        Map<String, Object> privilegeMap = new HashMap<>();
+        privilegeMap.put("readRequiredPriv", input.get("readRequiredPriv"));
+        privilegeMap.put("writeRequiredPriv", input.get("writeRequiredPriv"));
+        privilegeMap.put("inputs", input.get("inputs"));
+        privilegeMap.put("outputs", input.get("outputs"));
+
+        Map<String, Object> finalRequest = new HashMap<>();
+        finalRequest.put("identity", identityMap);
+        finalRequest.put("resources", resourceMap);
+        finalRequest.put("privileges", privilegeMap);
+        return finalRequest;
+    }
+
+    // Picks up settings changed in the watched file or through JMX since the last call.
+    private boolean refreshSettings() {
+        long generation = RuntimeSettings.get().getGeneration();
+        if (this.config == null || generation == this.settingsGeneration || generation == this.rejectedGeneration) {
+            return false;
+        }
+        LOG.info("Applying changed authorizer settings (generation {})", generation);
+        try {
+            this.configure();
+        } catch (RuntimeException e) {
+            // Reported once per change; the settings stay rejected until they change again.
+            this.rejectedGeneration = generation;
+            LOG.error("Rejected changed authorizer settings, keeping the previous ones: {}", e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    // Identifies a request by rule, principal, resource and privileges. Requests whose
+    // resource cannot be named are not cached.
+    private String decisionKey(String type, String path, Map<String, Object> identity, Map<String, Object> input) {
+        if (!isNullOrEmpty(input.get("inputs")) || !isNullOrEmpty(input.get("outputs"))) {
+            return null;
+        }
+        String resource = this.resourceKey(type, input);
+        if (resource == null) {
+            return null;
+        }
+        return decisionKey(path, identity, this.identityDimensions.get(type), resource,
+                (Privilege[]) input.get("readRequiredPriv"), (Privilege[]) input.get("writeRequiredPriv"));
+    }
+
+    // Identity dimensions the policy does not depend on are keyed as *. Groups are keyed as a
+    // sorted set, so their order and duplicates do not matter.
+    private static String decisionKey(String path, Map<String, Object> identity, List<String> dimensions,
+                                      String resource, Privilege[] readRequiredPriv, Privilege[] writeRequiredPriv) {
+        String groups = "*";
+        if (dimensions.contains("groups")) {
+            Set<String> groupSet = new TreeSet<>();
+            Object groupNames = identity.get("groups");
+            if (groupNames instanceof Iterable) {
+                for (Object group : (Iterable<?>) groupNames) {
+                    groupSet.add(String.valueOf(group));
+                }
+            }
+            groups = String.join(",", groupSet);
+        }
+        return new StringBuilder(path).append('|').append(dimensions.contains("username") ? identity.get("username") : "*")
+                .append('|').append(groups).append(resource)
+                .append("|read=").append(Arrays.toString(readRequiredPriv))
+                .append("|write=").append(Arrays.toString(writeRequiredPriv))
+                .toString();
+    }
+
+    // Names the resources of a request, e.g. |db=sales|table=sales.orders, or returns
+    // null if a resource is missing or of an unknown type.
+    private String resourceKey(String type, Map<String, Object> input) {
+        StringBuilder key = new StringBuilder();
+        Object database = input.get("database");
+        Object table = input.get("table");
+        Object partition = input.get("partition");
+        if (database instanceof Database) {
+            key.append("|db=").append(((Database) database).getName());
+        } else if (database != null || "database".equals(type)) {
+            return null;
+        }
+        if (table instanceof org.apache.hadoop.hive.metastore.api.Table) {
+            org.apache.hadoop.hive.metastore.api.Table tTable = (org.apache.hadoop.hive.metastore.api.Table) table;
+            key.append("|table=").append(tTable.getDbName()).append('.').append(tTable.getTableName());
+        } else if (table != null || "table".equals(type) || "column".equals(type)) {
+            return null;
+        }
+        if (partition instanceof Partition && ((Partition) partition).getTable() != null) {
+            Partition part = (Partition) partition;
+            key.append("|partition=").append(part.getTable().getDbName()).append('.')
+                    .append(part.getTable().getTableName()).append(part.getValues());
+        } else if (partition != null || "partition".equals(type)) {
+            return null;
+        }
+        if (input.get("columns") != null) {
+            key.append("|columns=").append(input.get("columns"));
+        }
+        return key.toString();
+    }
+
+    private static boolean isNullOrEmpty(Object entities) {
+        return entities == null || (entities instanceof Collection && ((Collection<?>) entities).isEmpty());
+    }
+
+    private Boolean cachedDecision(String key, String path, Map<String, Object> request, OpaRoute route) {
+        OpaHttpClient client = route == null ? this.opa : route.getClient();
+        AdaptiveConcurrencyLimiter limiter = route == null ? this.limiter : route.getLimiter();
+        return this.decisions.get(key, refreshOf(client, limiter, path, request));
+    }
+
+    // Refreshes a cached decision with a copy of the request, taken on the reading thread.
+    private static DecisionCache.Loader refreshOf(OpaHttpClient client, AdaptiveConcurrencyLimiter limiter,
+                                                 String path, Map<String, Object> request) {
+        return new DecisionCache.Loader() {
+            @Override
+            public PolicyDecision load() throws Exception {
+                return reevaluate(client, limiter, path, request);
+            }
+
+            @Override
+            public DecisionCache.Loader detach() {
+                Map<String, Object> copy = OpaHttpClient.copyOf(request);
+                return () -> reevaluate(client, limiter, path, copy);
+            }
+        };
+    }
+
+    // Counts table checks and, once a database is allowed, prefetches the decisions of its
+    // most checked tables for the same principal, from their latest checks.
+    private void prefetchAfter(String type, Map<String, Object> input, OpaRoute route, boolean allowed) {
+        Object table = input.get("table");
+        if ("table".equals(type) && table instanceof org.apache.hadoop.hive.metastore.api.Table) {
+            org.apache.hadoop.hive.metastore.api.Table tTable = (org.apache.hadoop.hive.metastore.api.Table) table;
+            this.prefetcher.record(tTable.getDbName(), tTable.getTableName(), () -> tableCheck(tTable, input));
+            return;
+        }
+        Object database = input.get("database");
+        if (!"database".equals(type) || !allowed || !(database instanceof Database)) {
+            return;
+        }
+        String path = route == null ? this.tableAuthResource : route.getPolicyUrl("table", this.tableAuthResource);
+        OpaHttpClient client = route == null ? this.opa : route.getClient();
+        AdaptiveConcurrencyLimiter limiter = route == null ? this.limiter : route.getLimiter();
+        Map<String, Object> identity = this.identity("table");
+        for (TablePrefetcher.TableCheck candidate : this.prefetcher.candidates(((Database) database).getName())) {
+            if (route == null && this.isGrantedByEntitlements(candidate.database, candidate.table,
+                    candidate.readRequiredPriv, candidate.writeRequiredPriv)) {
+                continue;
+            }
+            String key = decisionKey(path, identity, this.identityDimensions.get("table"),
+                    "|table=" + candidate.database + '.' + candidate.table,
+                    candidate.readRequiredPriv, candidate.writeRequiredPriv);
+            this.prefetcher.prefetch(key, () -> reevaluate(client, limiter, path, buildRequest(identity, inputOf(candidate))));
+        }
+    }
+
+    // Keeps what is needed to repeat a table check, with the table serialized right away,
+    // as the metastore may change its objects once the check returns.
+    private static TablePrefetcher.TableCheck tableCheck(org.apache.hadoop.hive.metastore.api.Table tTable,
+                                                         Map<String, Object> input) {
+        try {
+            return new TablePrefetcher.TableCheck(tTable.getDbName(), tTable.getTableName(),
+                    (Privilege[]) input.get("readRequiredPriv"), (Privilege[]) input.get("writeRequiredPriv"),
+                    OpaHttpClient.toJson(tTable));
+        } catch (JsonProcessingException e) {
+            LOG.debug("Not prefetching table {}.{}: {}", tTable.getDbName(), tTable.getTableName(), e.getMessage());
+            return null;
+        }
+    }
+
+    // The input of a kept table check; the table is sent as it was serialized.
+    private static Map<String, Object> inputOf(TablePrefetcher.TableCheck check) {
+        Map<String, Object> input = new HashMap<>();
+        input.put("table", new RawValue(check.tableJson));
+        input.put("readRequiredPriv", check.readRequiredPriv);
+        input.put("writeRequiredPriv", check.writeRequiredPriv);
+        return input;
+    }
+
+    // Refreshes a cached decision in the background. It takes a slot of the limiter like
+    // any other request, but never waits for one, as the cached decision is still valid.
+    private static PolicyDecision reevaluate(OpaHttpClient client, AdaptiveConcurrencyLimiter limiter,
+                                             String path, Map<String, Object> request) throws Exception {
+        if (limiter != null && !limiter.acquire(0)) {
+            throw new HiveException("No OPA capacity left to refresh " + path);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            PolicyDecision decision = client.decide(path, request);
+            failed = false;
+            return decision;
+        } finally {
+            if (limiter != null) {
+                limiter.release(System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    // Plain ACL grants for databases and tables are answered from the prefetched index,
+    // everything else goes to OPA.
+    private boolean isGrantedByEntitlements(String type, Map<String, Object> input) {
+        if (this.entitlements == null) {
+            return false;
+        }
+        String database;
+        String table = null;
+        Object resource = input.get(type);
+        if ("database".equals(type) && resource instanceof Database) {
+            database = ((Database) resource).getName();
+        } else if ("table".equals(type) && resource instanceof org.apache.hadoop.hive.metastore.api.Table) {
+            database = ((org.apache.hadoop.hive.metastore.api.Table) resource).getDbName();
+            table = ((org.apache.hadoop.hive.metastore.api.Table) resource).getTableName();
+        } else {
+            return false;
+        }
+        return this.isGrantedByEntitlements(database, table,
+                (Privilege[]) input.get("readRequiredPriv"), (Privilege[]) input.get("writeRequiredPriv"));
+    }
+
+    private boolean isGrantedByEntitlements(String database, String table, Privilege[] readRequiredPriv,
+                                            Privilege[] writeRequiredPriv) {
+        if (this.entitlements == null) {
+            return false;
+        }
+        return this.entitlements.current().allows(database, table,
+                this.authenticationProvider.getUserName(), this.authenticationProvider.getGroupNames(),
+                readRequiredPriv, writeRequiredPriv);
+    }
+
+    private void acquireBulkhead(String type, String principal) throws HiveException {
+        if (this.bulkhead == null) {
+            return;
+        }
+        boolean acquired;
+        try {
+            acquired = this.bulkhead.acquire(type, principal, this.bulkheadMaxWaitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HiveException("Interrupted while waiting for OPA authorization", e);
+        }
+        if (!acquired) {
+            LOG.warn("Rejecting {} check for {}, {} bulkhead is exhausted", type, principal, type);
+            throw new HiveException("Too many outstanding " + type + " authorization requests, try again later");
+        }
+    }
+
+    private void acquireLimiter(AdaptiveConcurrencyLimiter limiter, String path) throws HiveException {
+        if (limiter == null) {
+            return;
+        }
+        boolean acquired;
+        try {
+            acquired = limiter.acquire(this.limiterMaxWaitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HiveException("Interrupted while waiting for OPA authorization", e);
+        }
+        if (!acquired) {
+            LOG.warn("Rejecting {} check, {} OPA requests already in flight", path, limiter.getInFlight());
+            throw new HiveException("Too many outstanding OPA authorization requests, try again later");
+        }
+    }
+
+    // Minimal OPA HTTP client implementation
+    public static class OpaHttpClient {
+        private static final String DATA_API = "/v1/data/";
+
+        // Transports are shared by all clients of an OPA server with the same socket factory,
+        // so connections are pooled per server and TLS configuration.
+        private static final ConcurrentMap<List<Object>, OpaTransport> TRANSPORTS = new ConcurrentHashMap<>();
+
+        private volatile OpaTransport transport;
+        private final URI uri;
+        private final String basePath;
+        // One mapper for all clients, so the serializers it builds and caches are shared.
+        private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(ThriftStructSerializer.module());
+        private volatile OpaMetrics metrics;
+        private volatile RetryPolicy retries;
+        // At most one decision request per interval also asks for the provenance of its
+        // result, so the revision of the bundles OPA is serving stays known without probing.
+        private static final long REVISION_INTERVAL_MILLIS = 10_000L;
+        private volatile long revisionCheckedAt;
+        private volatile String revision;
+
+        // The base URL is either http(s)://host:port/v1/data or, for an OPA listening
+        // on a Unix domain socket, http+unix://<url encoded socket path>/v1/data.
+        public OpaHttpClient(String baseUrl) {
+            this(baseUrl, null);
+        }
+
+        // The socket factory is used for https connections.
+        public OpaHttpClient(String baseUrl, TlsSocketFactory tls) {
+            this.uri = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+            this.transport = transportFor(this.uri, tls);
+            this.basePath = this.uri.getRawPath();
+        }
+
+        private static OpaTransport transportFor(URI uri, TlsSocketFactory tls) {
+            String origin = uri.getScheme() + "://" + uri.getRawAuthority();
+            if (UNIX_SOCKET_SCHEME.equals(uri.getScheme())) {
+                return TRANSPORTS.computeIfAbsent(Arrays.asList(origin, null), key -> {
+                    try {
+                        return new UnixSocketTransport(URLDecoder.decode(uri.getRawAuthority(), "UTF-8"));
+                    } catch (UnsupportedEncodingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }
+            return TRANSPORTS.computeIfAbsent(Arrays.asList(origin, tls), key -> new HttpUrlConnectionTransport(origin, tls));
+        }
+
+        // Switches to the transport of another socket factory, e.g. after the TLS settings
+        // changed. Requests already sent finish on the previous transport.
+        void setTls(TlsSocketFactory tls) {
+            this.transport = transportFor(this.uri, tls);
+        }
+
+        OpaTransport getTransport() {
+            return this.transport;
+        }
+
+        void setMetrics(OpaMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        void setRetryPolicy(RetryPolicy retries) {
+            this.retries = retries;
+        }
+
+        RetryPolicy getRetryPolicy() {
+            return this.retries;
+        }
+
+        public OpaMetrics getMetrics() {
+            return this.metrics;
+        }
+
+        // Serializes a value on the calling thread, so that what is kept, or handed to another
+        // thread, no longer refers to the objects of the metastore.
+        static String toJson(Object value) throws JsonProcessingException {
+            return OBJECT_MAPPER.writeValueAsString(value);
+        }
+
+        // Copies an input into plain maps, lists and values on the calling thread, so it can be
+        // decided on another thread. Fails with an IllegalArgumentException like serializing it.
+        static Map<String, Object> copyOf(Map<String, Object> input) {
+            return OBJECT_MAPPER.convertValue(input, new TypeReference<Map<String, Object>>() { });
+        }
+
+        // Builds the serializers of the given types ahead of the first request that needs them.
+        void prepareSerializers(Class<?>... types) {
+            for (Class<?> type : types) {
+                if (!OBJECT_MAPPER.canSerialize(type)) {
+                    LOG.warn("No JSON serializer for {}", type.getName());
+                }
+            }
+        }
+
+        public boolean check(String path, Map<String, Object> input) throws Exception {
+            return this.decide(path, input).isAllowed();
+        }
+
+        // Evaluates a rule returning either a boolean or a decision with caching hints.
+        public PolicyDecision decide(String path, Map<String, Object> input) throws Exception {
+            OpaRequestEvent event = JfrSupport.AVAILABLE ? OpaRequestEvent.start() : null;
+            byte[] json = null;
+            OpaTransport.Response response = null;
+            Boolean allowed = null;
+            try {
+                long start = System.nanoTime();
+                json = OBJECT_MAPPER.writeValueAsBytes(Collections.singletonMap("input", input));
+                long serialized = System.nanoTime();
+                boolean measured = metrics != null && metrics.sample();
+                long now = System.currentTimeMillis();
+                boolean provenance = now - revisionCheckedAt >= REVISION_INTERVAL_MILLIS;
+                if (provenance) {
+                    revisionCheckedAt = now;
+                }
+                String query = measured && provenance ? "?metrics=true&provenance=true"
+                        : measured ? "?metrics=true" : provenance ? "?provenance=true" : "";
+                response = this.send("POST", basePath + path + query, json);
+                long received = System.nanoTime();
+                JsonNode node = OBJECT_MAPPER.readTree(response.getBody());
+                if (provenance) {
+                    this.updateRevision(node.get("provenance"));
+                }
+                if (measured) {
+                    long parsed = System.nanoTime();
+                    metrics.record(path, serialized - start, received - serialized, parsed - received, node.get("metrics"));
+                    LOG.debug("Timings for {}: serialize={}ns, round trip={}ns, parse={}ns, server={}",
+                            path, serialized - start, received - serialized, parsed - received, node.get("metrics"));
+                }
+                PolicyDecision decision = PolicyDecision.parse(node.get("result"));
+                if (decision == null) {
+                    LOG.debug(node.toPrettyString());
+                    throw new RuntimeException("OPA response missing boolean 'result' or 'result.allow'");
+                }
+                allowed = decision.isAllowed();
+                return decision;
+            } finally {
+                if (event != null) {
+                    event.finish(path, json == null ? -1 : json.length,
+                            response == null ? -1 : response.getBody().length, allowed);
+                }
+            }
+        }
+
+        // Evaluates several checks in one query against a decisions document, which maps the
+        // id of every check to its decision. Checks without a boolean decision are left out.
+        public Map<String, PolicyDecision> checkAll(String path, List<Map<String, Object>> checks) throws Exception {
+            Map<String, Object> input = Collections.singletonMap("checks", checks);
+            byte[] json = OBJECT_MAPPER.writeValueAsBytes(Collections.singletonMap("input", input));
+            JsonNode result = this.execute("POST", basePath + path, json).get("result");
+            if (result == null || !result.isObject()) {
+                throw new RuntimeException("OPA response missing object 'result'");
+            }
+            Map<String, PolicyDecision> decisions = new HashMap<>();
+            result.fields().forEachRemaining(decision -> {
+                PolicyDecision parsed = PolicyDecision.parse(decision.getValue());
+                if (parsed != null) {
+                    decisions.put(decision.getKey(), parsed);
+                }
+            });
+            return decisions;
+        }
+
+        // Partially evaluates the rule at path via the Compile API, treating the given
+        // input paths as unknown. With a field, e.g. "allow", that field of the rule's
+        // result is compiled instead of the rule itself. Returns the "result" of the response.
+        public JsonNode compile(String path, String field, Map<String, Object> input, List<String> unknowns) throws Exception {
+            int dataApi = basePath.indexOf(DATA_API);
+            if (dataApi < 0) {
+                throw new IllegalStateException("Partial evaluation requires a /v1/data base endpoint: " + basePath);
+            }
+            String document = (basePath.substring(dataApi + DATA_API.length()) + path).replaceAll("/+$", "");
+            Map<String, Object> request = new HashMap<>();
+            String target = "data." + document.replace('/', '.') + (field == null ? "" : "." + field);
+            request.put("query", target + " == true");
+            request.put("input", input);
+            request.put("unknowns", unknowns);
+
+            String compilePath = basePath.substring(0, dataApi) + "/v1/compile";
+            return this.execute("POST", compilePath, OBJECT_MAPPER.writeValueAsBytes(request)).get("result");
+        }
+
+        // Reads a data document, e.g. the entitlement index, returns null if it is undefined.
+        public JsonNode getDocument(String path) throws Exception {
+            return this.execute("GET", basePath + path, null).get("result");
+        }
+
+        // Asks OPA's health API whether the server is up and its bundles are activated.
+        public boolean isHealthy() throws Exception {
+            int dataApi = basePath.indexOf(DATA_API);
+            String root = dataApi < 0 ? "" : basePath.substring(0, dataApi);
+            return transport.execute("GET", root + "/health?bundles=true", null).getStatus() == 200;
+        }
+
+        // Returns the revisions of the bundles providing the rule at path, as name=revision
+        // pairs, or null if OPA does not report any.
+        public String getRevision(String path) throws Exception {
+            return this.updateRevision(this.execute("GET", basePath + path + "?provenance=true", null).get("provenance"));
+        }
+
+        // The revision last reported by OPA, for a decision or a call of getRevision.
+        public String getPolicyRevision() {
+            return this.revision;
+        }
+
+        private String updateRevision(JsonNode provenance) {
+            String current = revisionOf(provenance);
+            if (current != null) {
+                this.revision = current;
+            }
+            return current;
+        }
+
+        private static String revisionOf(JsonNode provenance) {
+            if (provenance == null) {
+                return null;
+            }
+            List<String> revisions = new ArrayList<>();
+            provenance.path("bundles").fields().forEachRemaining(bundle ->
+                    revisions.add(bundle.getKey() + "=" + bundle.getValue().path("revision").asText()));
+            if (revisions.isEmpty() && provenance.hasNonNull("revision")) {
+                return provenance.get("revision").asText();
+            }
+            return revisions.isEmpty() ? null : String.join(",", revisions);
+        }
+
+        private JsonNode execute(String method, String path, byte[] body) throws Exception {
+            return OBJECT_MAPPER.readTree(this.send(method, path, body).getBody());
+        }
+
+        // Queries are idempotent, so failed requests can be retried as they are.
+        private OpaTransport.Response send(String method, String path, byte[] body) throws Exception {
+            RetryPolicy retryPolicy = this.retries;
+            if (retryPolicy == null) {
+                return this.sendOnce(method, path, body, 0);
+            }
+            return retryPolicy.execute(timeoutMillis -> this.sendOnce(method, path, body, timeoutMillis));
+        }
+
+        private OpaTransport.Response sendOnce(String method, String path, byte[] body, int timeoutMillis) throws Exception {
+            OpaTransport.Response response = transport.execute(method, path, body, timeoutMillis);
+            int code = response.getStatus();
+            if (code != 200) {
+                String message = "OPA returned non-200: " + code;
+                throw RetryPolicy.isTransientStatus(code) ? new RetryPolicy.TransientStatusException(message) : new RuntimeException(message);
+            }
+            return response;
+        }
+    }
 }
\ No newline at end of file
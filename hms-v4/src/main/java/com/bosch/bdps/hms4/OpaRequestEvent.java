@@ -0,0 +1,74 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for one decision request sent to OPA, covering serialization,
+ * the round trip and parsing of the response.
+ */
+@Name("com.bosch.bdps.opa.OpaRequest")
+@Label("OPA Request")
+@Category({"Hive Metastore", "OPA Authorizer"})
+@Description("Decision request sent to OPA by the Hive Metastore OPA authorizer")
+@StackTrace(false)
+@Threshold("10 ms")
+final class OpaRequestEvent extends Event {
+
+    @Label("Policy")
+    String policy;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestSize;
+
+    @Label("Response Size")
+    @DataAmount
+    long responseSize;
+
+    @Label("Allowed")
+    boolean allowed;
+
+    @Label("Failed")
+    boolean failed;
+
+    static OpaRequestEvent start() {
+        OpaRequestEvent event = new OpaRequestEvent();
+        event.begin();
+        return event;
+    }
+
+    void finish(String policy, long requestSize, long responseSize, Boolean allowed) {
+        end();
+        if (shouldCommit()) {
+            this.policy = policy;
+            this.requestSize = requestSize;
+            this.responseSize = responseSize;
+            this.allowed = Boolean.TRUE.equals(allowed);
+            this.failed = allowed == null;
+            commit();
+        }
+    }
+}
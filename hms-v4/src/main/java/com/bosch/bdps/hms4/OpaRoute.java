@@ -0,0 +1,117 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Sends the checks of some databases or catalogs to an OPA endpoint of their own, e.g. to
+ * give a tenant its own OPA cluster. The endpoint has its own engine, hence its own
+ * connections and concurrency limit, so a slow or overloaded cluster only affects the
+ * databases routed to it.
+ */
+public class OpaRoute {
+
+    // Catalog of databases that do not name one, as in HMS.
+    static final String DEFAULT_CATALOG = "hive";
+
+    private final String name;
+    private final List<Pattern> databases;
+    private final List<String> catalogs;
+    private final Map<String, String> policyUrls;
+    private final OpaBasedAuthorizationProvider.OpaHttpClient client;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    /**
+     * @param databases  database name patterns, * matching any characters; empty for any database
+     * @param catalogs   catalog names; empty for any catalog
+     * @param policyUrls policy type -> path, types without an entry use the path of the base endpoint
+     * @param limiter    concurrency limit of the endpoint, or null
+     */
+    public OpaRoute(String name, List<String> databases, List<String> catalogs, Map<String, String> policyUrls,
+                    OpaBasedAuthorizationProvider.OpaHttpClient client, AdaptiveConcurrencyLimiter limiter) {
+        this.name = name;
+        List<Pattern> patterns = new ArrayList<>();
+        for (String database : databases) {
+            patterns.add(glob(database));
+        }
+        this.databases = Collections.unmodifiableList(patterns);
+        List<String> lowerCaseCatalogs = new ArrayList<>();
+        for (String catalog : catalogs) {
+            lowerCaseCatalogs.add(catalog.toLowerCase());
+        }
+        this.catalogs = Collections.unmodifiableList(lowerCaseCatalogs);
+        this.policyUrls = policyUrls;
+        this.client = client;
+        this.limiter = limiter;
+    }
+
+    // HMS stores names in lower case, so patterns match regardless of case.
+    static Pattern glob(String pattern) {
+        String[] literals = pattern.split("\\*", -1);
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < literals.length; i++) {
+            if (i > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(literals[i]));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Tells whether checks of the database belong to this route. Checks that do not name a
+     * database never do.
+     */
+    public boolean matches(String catalog, String database) {
+        if (database == null) {
+            return false;
+        }
+        if (!catalogs.isEmpty() && !catalogs.contains(catalog == null ? DEFAULT_CATALOG : catalog.toLowerCase())) {
+            return false;
+        }
+        if (databases.isEmpty()) {
+            return true;
+        }
+        for (Pattern pattern : databases) {
+            if (pattern.matcher(database).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPolicyUrl(String type, String defaultUrl) {
+        return policyUrls.getOrDefault(type, defaultUrl);
+    }
+
+    public OpaBasedAuthorizationProvider.OpaHttpClient getClient() {
+        return client;
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+}
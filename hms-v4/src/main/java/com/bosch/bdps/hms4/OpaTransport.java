@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import java.io.IOException;
+
+/**
+ * Carries HTTP requests to OPA. Paths are absolute on the OPA server, e.g.
+ * {@code /v1/data/hms/table_allow}.
+ */
+public interface OpaTransport {
+
+    default Response execute(String method, String path, byte[] body) throws IOException {
+        return execute(method, path, body, 0);
+    }
+
+    /**
+     * @param timeoutMillis time the request may wait to connect and for each read, 0 for no limit
+     */
+    Response execute(String method, String path, byte[] body, int timeoutMillis) throws IOException;
+
+    /**
+     * Returns the number of requests currently being executed.
+     */
+    int getActiveRequests();
+
+    /**
+     * Returns the number of connections kept open for reuse, or -1 if the transport cannot tell.
+     */
+    default int getIdleConnections() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of TLS handshakes that established a new session, or -1 if not known.
+     */
+    default long getFullTlsHandshakes() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of TLS handshakes that resumed an earlier session, or -1 if not known.
+     */
+    default long getResumedTlsHandshakes() {
+        return -1;
+    }
+
+    final class Response {
+        private final int status;
+        private final byte[] body;
+
+        public Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
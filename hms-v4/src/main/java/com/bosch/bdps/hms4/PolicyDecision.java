@@ -0,0 +1,105 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A decision of a policy together with the caching hints it gave. A policy either
+ * returns a plain boolean, or an object like
+ * {@code {"allow": true, "ttl_seconds": 3600, "scope": "shared"}}, where {@code ttl_seconds}
+ * overrides how long the decision is cached and {@code scope} is {@code shared}, the
+ * default, or {@code call} for a decision that only holds within one metastore call.
+ */
+public final class PolicyDecision {
+
+    public enum Scope {
+        SHARED, CALL
+    }
+
+    /**
+     * Returned by {@link #getTtlMillis()} if the policy left the lifetime to the cache settings.
+     */
+    public static final long DEFAULT_TTL = -1L;
+
+    private static final PolicyDecision ALLOWED = new PolicyDecision(true, DEFAULT_TTL, Scope.SHARED);
+    private static final PolicyDecision DENIED = new PolicyDecision(false, DEFAULT_TTL, Scope.SHARED);
+
+    private final boolean allowed;
+    private final long ttlMillis;
+    private final Scope scope;
+
+    public PolicyDecision(boolean allowed, long ttlMillis, Scope scope) {
+        this.allowed = allowed;
+        this.ttlMillis = ttlMillis;
+        this.scope = scope;
+    }
+
+    /**
+     * A decision without hints, as returned by a boolean rule.
+     */
+    public static PolicyDecision of(boolean allowed) {
+        return allowed ? ALLOWED : DENIED;
+    }
+
+    /**
+     * Reads the result of a rule, or returns null if it is neither a boolean nor an object
+     * with a boolean {@code allow}. An unknown scope is read as {@code call}, so a decision
+     * is never shared more widely than its policy meant.
+     */
+    public static PolicyDecision parse(JsonNode result) {
+        if (result == null) {
+            return null;
+        }
+        if (result.isBoolean()) {
+            return of(result.asBoolean());
+        }
+        JsonNode allow = result.get("allow");
+        if (!result.isObject() || allow == null || !allow.isBoolean()) {
+            return null;
+        }
+        JsonNode ttl = result.get("ttl_seconds");
+        long ttlMillis = ttl != null && ttl.isNumber() ? Math.max(0L, (long) (ttl.asDouble() * 1000.0)) : DEFAULT_TTL;
+        JsonNode scope = result.get("scope");
+        Scope parsedScope = scope == null || "shared".equals(scope.asText()) ? Scope.SHARED : Scope.CALL;
+        return new PolicyDecision(allow.asBoolean(), ttlMillis, parsedScope);
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Whether the decision may be cached beyond the metastore call it was taken for.
+     */
+    public boolean isShared() {
+        return scope == Scope.SHARED && ttlMillis != 0L;
+    }
+
+    @Override
+    public String toString() {
+        return allowed + (ttlMillis == DEFAULT_TTL ? "" : " for " + ttlMillis + " ms") + (scope == Scope.SHARED ? "" : " within the call");
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches partially evaluated policy rules per (rule, user, groups). The first check of a
+ * principal asks OPA's Compile API for the residual of the rule, every later check of
+ * that principal is evaluated locally, whatever resource it is about. Residuals that
+ * cannot be translated are remembered as well, so such principals go straight to OPA.
+ */
+public class ResidualPolicyCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResidualPolicyCache.class);
+
+    private static final List<String> UNKNOWNS = Arrays.asList("input.resources", "input.privileges");
+
+    private final OpaBasedAuthorizationProvider.OpaHttpClient opa;
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(ThriftStructSerializer.module());
+    private volatile long ttlMillis;
+    private final StripedLruMap<Entry> entries;
+
+    public ResidualPolicyCache(OpaBasedAuthorizationProvider.OpaHttpClient opa, long ttlMillis, int maxEntries) {
+        this.opa = opa;
+        this.ttlMillis = ttlMillis;
+        this.entries = new StripedLruMap<>(maxEntries);
+    }
+
+    /**
+     * Decides the request locally if possible.
+     *
+     * @param identity the identity part of the request, used for partial evaluation
+     * @param request  the full request, as it would be sent to OPA
+     * @return the decision, or null if the rule has to be evaluated by OPA
+     */
+    public Boolean evaluate(String path, Map<String, Object> identity, Map<String, Object> request) {
+        ResidualPolicy residual = residualFor(path, identity);
+        if (residual == null) {
+            return null;
+        }
+        return residual.test(objectMapper.valueToTree(request));
+    }
+
+    private ResidualPolicy residualFor(String path, Map<String, Object> identity) {
+        String key = key(path, identity);
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.residual;
+        }
+        ResidualPolicy residual;
+        try {
+            Map<String, Object> input = Collections.singletonMap("identity", identity);
+            // Rules may return true or an object with caching hints, see PolicyDecision,
+            // so the residual allows a request if either form does.
+            residual = ResidualPolicy.anyOf(
+                    ResidualPolicy.translate(opa.compile(path, null, input, UNKNOWNS)),
+                    ResidualPolicy.translate(opa.compile(path, "allow", input, UNKNOWNS)));
+        } catch (Exception e) {
+            // Not cached, the next check of this principal tries again.
+            LOG.warn("Partial evaluation of {} failed: {}", path, e.getMessage());
+            return null;
+        }
+        if (residual == null) {
+            LOG.debug("Residual of {} for {} is not supported, falling back to full evaluation", path, key);
+        }
+        entries.put(key, new Entry(residual, now + ttlMillis));
+        return residual;
+    }
+
+    /**
+     * Changes TTL and capacity at runtime. Surplus entries are evicted on the next insert.
+     */
+    public void resize(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.entries.resize(maxEntries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String key(String path, Map<String, Object> identity) {
+        List<String> groups = new ArrayList<>();
+        Object groupNames = identity.get("groups");
+        if (groupNames instanceof Iterable) {
+            for (Object group : (Iterable<?>) groupNames) {
+                groups.add(String.valueOf(group));
+            }
+        }
+        Collections.sort(groups);
+        return path + "|" + identity.get("username") + "|" + String.join(",", groups);
+    }
+
+    private static final class Entry {
+        private final ResidualPolicy residual;
+        private final long expiresAt;
+
+        Entry(ResidualPolicy residual, long expiresAt) {
+            this.residual = residual;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide authorizer settings that can be changed while HMS is running, either in
+ * a watched properties file or through JMX ({@code com.bosch.bdps.opa:type=RuntimeSettings}).
+ * They take precedence over environment and Hive configuration. Every change publishes
+ * a new immutable snapshot and bumps the generation, which the providers compare on
+ * their next authorization call to re-apply their configuration in one go.
+ */
+public final class RuntimeSettings implements RuntimeSettingsMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RuntimeSettings.class);
+    private static final String CONFIG_PREFIX = "com.bosch.bdps.opa.authorization.";
+    private static final RuntimeSettings INSTANCE = new RuntimeSettings();
+
+    private volatile Map<String, String> effective = Collections.emptyMap();
+    private volatile long generation;
+
+    private Map<String, String> fileOverrides = Collections.emptyMap();
+    private final Map<String, String> jmxOverrides = new HashMap<>();
+
+    private File watchedFile;
+    private long watchedModified;
+    private ScheduledExecutorService watcher;
+
+    private RuntimeSettings() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("com.bosch.bdps.opa:type=RuntimeSettings"));
+        } catch (InstanceAlreadyExistsException e) {
+            LOG.debug("RuntimeSettings MBean is already registered");
+        } catch (Exception e) {
+            LOG.warn("Failed to register RuntimeSettings MBean: {}", e.getMessage());
+        }
+    }
+
+    public static RuntimeSettings get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the overridden value of a setting, or null.
+     */
+    public String get(String name) {
+        return effective.get(name);
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Starts polling the given properties file for changes. Keys may be given with or
+     * without the {@code com.bosch.bdps.opa.authorization.} prefix.
+     */
+    public synchronized void watch(File file, long intervalMillis) {
+        if (file.equals(watchedFile)) {
+            return;
+        }
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+        watchedFile = file;
+        watchedModified = 0L;
+        loadIfModified();
+        watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "opa-settings-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::loadIfModified, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized String getWatchedFile() {
+        return watchedFile == null ? null : watchedFile.getPath();
+    }
+
+    @Override
+    public synchronized void reload() {
+        watchedModified = 0L;
+        loadIfModified();
+    }
+
+    @Override
+    public synchronized void setOverride(String name, String value) {
+        jmxOverrides.put(strip(name), value);
+        publish();
+    }
+
+    @Override
+    public synchronized void clearOverride(String name) {
+        if (jmxOverrides.remove(strip(name)) != null) {
+            publish();
+        }
+    }
+
+    @Override
+    public String[] getOverrides() {
+        Map<String, String> sorted = new TreeMap<>(effective);
+        String[] overrides = new String[sorted.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            overrides[i++] = entry.getKey() + "=" + entry.getValue();
+        }
+        return overrides;
+    }
+
+    private synchronized void loadIfModified() {
+        if (watchedFile == null) {
+            return;
+        }
+        long modified = watchedFile.lastModified();
+        if (modified == watchedModified) {
+            return;
+        }
+        Properties properties = new Properties();
+        if (modified != 0L) {
+            try (InputStream in = Files.newInputStream(watchedFile.toPath())) {
+                properties.load(in);
+            } catch (IOException e) {
+                // Keep the previous settings, try again on the next poll.
+                LOG.warn("Failed to read authorizer settings from {}: {}", watchedFile, e.getMessage());
+                return;
+            }
+        }
+        watchedModified = modified;
+        Map<String, String> loaded = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            loaded.put(strip(key), properties.getProperty(key).trim());
+        }
+        fileOverrides = loaded;
+        publish();
+    }
+
+    private void publish() {
+        Map<String, String> merged = new HashMap<>(fileOverrides);
+        merged.putAll(jmxOverrides);
+        if (merged.equals(effective)) {
+            return;
+        }
+        effective = Collections.unmodifiableMap(merged);
+        generation++;
+        LOG.info("Authorizer settings changed (generation {}): {}", generation, String.join(", ", getOverrides()));
+    }
+
+    /**
+     * Drops all overrides and stops watching. For tests.
+     */
+    synchronized void reset() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+        watchedFile = null;
+        fileOverrides = Collections.emptyMap();
+        jmxOverrides.clear();
+        publish();
+    }
+
+    private static String strip(String name) {
+        return name.startsWith(CONFIG_PREFIX) ? name.substring(CONFIG_PREFIX.length()) : name;
+    }
+}
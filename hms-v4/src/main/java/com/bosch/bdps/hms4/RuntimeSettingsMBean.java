@@ -0,0 +1,36 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+/**
+ * JMX view of {@link RuntimeSettings}. Setting names are given without the
+ * {@code com.bosch.bdps.opa.authorization.} prefix, e.g. {@code limiter.max}.
+ */
+public interface RuntimeSettingsMBean {
+
+    String[] getOverrides();
+
+    long getGeneration();
+
+    String getWatchedFile();
+
+    void setOverride(String name, String value);
+
+    void clearOverride(String name);
+
+    void reload();
+}
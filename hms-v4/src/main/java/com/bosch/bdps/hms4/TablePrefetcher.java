@@ -0,0 +1,251 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.apache.hadoop.hive.ql.security.authorization.Privilege;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Warms the decision cache with the table checks that usually follow a database check.
+ * Table checks are counted per database; once a database is allowed for a principal,
+ * the tables that make up at least a minimum share of its checks, most frequent first,
+ * are decided for the same principal on a small bounded executor. Prefetches that
+ * cannot be queued are dropped, and tables whose decision is cached are skipped. Of the
+ * checks, only a compact {@link TableCheck} is kept, never the metastore objects.
+ */
+public class TablePrefetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TablePrefetcher.class);
+
+    // A hot table is checked many times a second; its template is taken again at most once a second.
+    private static final long CHECK_INTERVAL_MILLIS = 1000L;
+
+    /**
+     * What is kept of a table check to repeat it: the names of the table, the privileges,
+     * and the table serialized to JSON on the checking thread.
+     */
+    public static final class TableCheck {
+        final String database;
+        final String table;
+        final Privilege[] readRequiredPriv;
+        final Privilege[] writeRequiredPriv;
+        final String tableJson;
+        final long takenAt = System.currentTimeMillis();
+
+        public TableCheck(String database, String table, Privilege[] readRequiredPriv,
+                          Privilege[] writeRequiredPriv, String tableJson) {
+            this.database = database;
+            this.table = table;
+            this.readRequiredPriv = readRequiredPriv == null ? null : readRequiredPriv.clone();
+            this.writeRequiredPriv = writeRequiredPriv == null ? null : writeRequiredPriv.clone();
+            this.tableJson = tableJson;
+        }
+    }
+
+    // Checks of one table, with its latest check as template for prefetches.
+    private static final class TableStats {
+        final LongAdder checks = new LongAdder();
+        volatile TableCheck check;
+    }
+
+    private static final class DatabaseStats {
+        final Map<String, TableStats> tables = new ConcurrentHashMap<>();
+        final LongAdder checks = new LongAdder();
+    }
+
+    private final DecisionCache decisions;
+    private final Executor executor;
+    private final StripedLruMap<DatabaseStats> databases;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile int maxTables;
+    private volatile double minShare;
+    private volatile int trackedTables;
+
+    private final LongAdder prefetched = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param maxTables     tables prefetched after one database check at most
+     * @param minShare      share of the table checks of a database a table needs to be prefetched
+     * @param trackedTables tables counted per database; when full, the least checked one is replaced
+     * @param maxDatabases  databases counted; the least recently checked one is dropped first
+     */
+    public TablePrefetcher(DecisionCache decisions, int maxTables, double minShare, int trackedTables,
+                           int maxDatabases, int threads, int queueSize) {
+        this(decisions, maxTables, minShare, trackedTables, maxDatabases, boundedExecutor(threads, queueSize));
+    }
+
+    TablePrefetcher(DecisionCache decisions, int maxTables, double minShare, int trackedTables,
+                    int maxDatabases, Executor executor) {
+        this.decisions = decisions;
+        this.executor = executor;
+        this.databases = new StripedLruMap<>(maxDatabases);
+        update(maxTables, minShare, trackedTables, maxDatabases);
+    }
+
+    private static Executor boundedExecutor(int threads, int queueSize) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "opa-prefetch-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Counts a table check. The check is taken as template for later prefetches if there
+     * is none yet or the last one is older than a second; it may return null to keep it.
+     */
+    public void record(String database, String table, Supplier<TableCheck> check) {
+        DatabaseStats stats = databases.get(database);
+        if (stats == null) {
+            stats = new DatabaseStats();
+            databases.put(database, stats);
+        }
+        TableStats tableStats = stats.tables.get(table);
+        if (tableStats == null) {
+            tableStats = newTable(stats, table);
+        }
+        TableCheck latest = tableStats.check;
+        if (latest == null || System.currentTimeMillis() - latest.takenAt >= CHECK_INTERVAL_MILLIS) {
+            TableCheck taken = check.get();
+            if (taken != null) {
+                tableStats.check = taken;
+            }
+        }
+        tableStats.checks.increment();
+        stats.checks.increment();
+    }
+
+    private synchronized TableStats newTable(DatabaseStats stats, String table) {
+        TableStats existing = stats.tables.get(table);
+        if (existing != null) {
+            return existing;
+        }
+        if (stats.tables.size() >= trackedTables) {
+            String least = null;
+            long leastChecks = Long.MAX_VALUE;
+            for (Map.Entry<String, TableStats> entry : stats.tables.entrySet()) {
+                long checks = entry.getValue().checks.sum();
+                if (checks < leastChecks) {
+                    least = entry.getKey();
+                    leastChecks = checks;
+                }
+            }
+            if (least != null && stats.tables.remove(least) != null) {
+                stats.checks.add(-leastChecks);
+            }
+        }
+        TableStats created = new TableStats();
+        stats.tables.put(table, created);
+        return created;
+    }
+
+    /**
+     * Returns the latest checks of the tables worth prefetching after a check of the
+     * database, most frequently checked first.
+     */
+    public List<TableCheck> candidates(String database) {
+        DatabaseStats stats = databases.get(database);
+        if (stats == null) {
+            return Collections.emptyList();
+        }
+        long total = stats.checks.sum();
+        List<Map.Entry<TableStats, Long>> counted = new ArrayList<>();
+        for (TableStats table : stats.tables.values()) {
+            long checks = table.checks.sum();
+            if (total > 0 && checks >= minShare * total && table.check != null) {
+                counted.add(new AbstractMap.SimpleEntry<>(table, checks));
+            }
+        }
+        counted.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        List<TableCheck> checks = new ArrayList<>();
+        for (Map.Entry<TableStats, Long> table : counted.subList(0, Math.min(maxTables, counted.size()))) {
+            checks.add(table.getKey().check);
+        }
+        return checks;
+    }
+
+    /**
+     * Decides a table check in the background and caches the decision, unless it is cached
+     * or already being prefetched. Never blocks.
+     */
+    public void prefetch(String key, DecisionCache.Loader loader) {
+        if (decisions.isCached(key) || !inFlight.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    decisions.put(key, loader.load());
+                    prefetched.increment();
+                } catch (Exception e) {
+                    failures.increment();
+                    LOG.debug("Failed to prefetch decision {}: {}", key, e.getMessage());
+                } finally {
+                    inFlight.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key);
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Changes how much is prefetched and tracked at runtime.
+     */
+    public void update(int maxTables, double minShare, int trackedTables, int maxDatabases) {
+        this.maxTables = maxTables;
+        this.minShare = minShare;
+        this.trackedTables = Math.max(1, trackedTables);
+        this.databases.resize(maxDatabases);
+    }
+
+    public long getPrefetchedCount() {
+        return prefetched.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Creates TLS connections to OPA from one {@link SSLContext}, so that all connections
+ * share its client session cache and new connections resume an earlier session instead
+ * of doing a full handshake. Protocols and cipher suites can be restricted, and both
+ * kinds of handshakes are counted.
+ */
+public class TlsSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+
+    private final LongAdder fullHandshakes = new LongAdder();
+    private final LongAdder resumedHandshakes = new LongAdder();
+
+    /**
+     * @param protocols    enabled protocols, e.g. TLSv1.3, or null for the JVM's defaults
+     * @param cipherSuites enabled cipher suites, or null for the JVM's defaults
+     */
+    public TlsSocketFactory(SSLContext context, String[] protocols, String[] cipherSuites) {
+        this.delegate = context.getSocketFactory();
+        this.protocols = protocols;
+        this.cipherSuites = cipherSuites;
+    }
+
+    /**
+     * Builds a context from key and trust store files. Without a trust store, the JVM's
+     * trusted certificates are used; without a key store, no client certificate is sent.
+     *
+     * @param storeType              type of both stores, e.g. PKCS12 or JKS
+     * @param sessionCacheSize       number of sessions kept for resumption, 0 for no limit
+     * @param sessionTimeoutSeconds  how long a session can be resumed, 0 for no limit
+     */
+    public static SSLContext createContext(String trustStore, String trustStorePassword,
+                                           String keyStore, String keyStorePassword, String storeType,
+                                           int sessionCacheSize, int sessionTimeoutSeconds)
+            throws GeneralSecurityException, IOException {
+        TrustManagerFactory trustManagers = null;
+        if (trustStore != null) {
+            trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagers.init(load(trustStore, trustStorePassword, storeType));
+        }
+        KeyManagerFactory keyManagers = null;
+        if (keyStore != null) {
+            keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(load(keyStore, keyStorePassword, storeType),
+                    keyStorePassword == null ? null : keyStorePassword.toCharArray());
+        }
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers == null ? null : keyManagers.getKeyManagers(),
+                trustManagers == null ? null : trustManagers.getTrustManagers(), null);
+        SSLSessionContext sessions = context.getClientSessionContext();
+        sessions.setSessionCacheSize(sessionCacheSize);
+        sessions.setSessionTimeout(sessionTimeoutSeconds);
+        return context;
+    }
+
+    private static KeyStore load(String path, String password, String type) throws GeneralSecurityException, IOException {
+        KeyStore store = KeyStore.getInstance(type);
+        try (InputStream in = new FileInputStream(path)) {
+            store.load(in, password == null ? null : password.toCharArray());
+        }
+        return store;
+    }
+
+    public long getFullHandshakeCount() {
+        return fullHandshakes.sum();
+    }
+
+    public long getResumedHandshakeCount() {
+        return resumedHandshakes.sum();
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return cipherSuites == null ? delegate.getDefaultCipherSuites() : cipherSuites.clone();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+        return configure(delegate.createSocket(socket, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    // A resumed session was created by an earlier connection, before this socket existed.
+    // The JDK notifies the listener on a separate thread, so counts lag slightly behind.
+    private Socket configure(Socket socket) {
+        if (!(socket instanceof SSLSocket)) {
+            return socket;
+        }
+        SSLSocket ssl = (SSLSocket) socket;
+        if (protocols != null) {
+            ssl.setEnabledProtocols(protocols);
+        }
+        if (cipherSuites != null) {
+            ssl.setEnabledCipherSuites(cipherSuites);
+        }
+        long created = System.currentTimeMillis();
+        ssl.addHandshakeCompletedListener(event -> {
+            if (event.getSession().getCreationTime() < created) {
+                resumedHandshakes.increment();
+            } else {
+                fullHandshakes.increment();
+            }
+        });
+        return ssl;
+    }
+}
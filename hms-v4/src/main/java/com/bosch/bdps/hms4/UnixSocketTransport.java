@@ -0,0 +1,312 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Talks HTTP/1.1 to an OPA sidecar listening on a Unix domain socket
+ * ({@code opa run --server --addr unix:///var/run/opa/opa.sock}), avoiding the loopback
+ * TCP stack. Connections are kept alive and pooled. Channels do not honor
+ * {@code SO_TIMEOUT}, so they are used non-blocking and every wait for the socket is
+ * limited by the timeout of the request. Unix domain socket channels are
+ * available from Java 16 on; they are looked up reflectively so the authorizer still
+ * runs on older JVMs as long as this transport is not configured.
+ */
+public class UnixSocketTransport implements OpaTransport {
+
+    private static final int MAX_IDLE_CONNECTIONS = 64;
+
+    private final SocketAddress address;
+    private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+
+    public UnixSocketTransport(String socketPath) {
+        this.address = socketAddress(socketPath);
+    }
+
+    @Override
+    public Response execute(String method, String path, byte[] body, int timeoutMillis) throws IOException {
+        active.incrementAndGet();
+        try {
+            return send(method, path, body, timeoutMillis);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int getActiveRequests() {
+        return active.get();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    private Response send(String method, String path, byte[] body, int timeoutMillis) throws IOException {
+        Connection pooled = idle.pollFirst();
+        if (pooled != null) {
+            try {
+                return exchange(pooled, method, path, body, timeoutMillis);
+            } catch (SocketTimeoutException e) {
+                pooled.close();
+                throw e;
+            } catch (IOException e) {
+                // OPA may have closed the idle connection in the meantime, retry on a new one.
+                pooled.close();
+            }
+        }
+        return exchange(new Connection(open()), method, path, body, timeoutMillis);
+    }
+
+    private Response exchange(Connection connection, String method, String path, byte[] body,
+                              int timeoutMillis) throws IOException {
+        boolean reusable = false;
+        try {
+            connection.timeoutMillis = timeoutMillis;
+            connection.writeRequest(method, path, body);
+            Response response = connection.readResponse();
+            reusable = connection.keepAlive;
+            return response;
+        } finally {
+            if (reusable && idle.size() < MAX_IDLE_CONNECTIONS) {
+                idle.offerFirst(connection);
+            } else {
+                connection.close();
+            }
+        }
+    }
+
+    private SocketChannel open() throws IOException {
+        try {
+            Method open = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            SocketChannel channel = (SocketChannel) open.invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+            channel.connect(address);
+            return channel;
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Cannot connect to " + address, e.getCause());
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new IOException("Unix domain sockets require Java 16 or newer", e);
+        }
+    }
+
+    static SocketAddress socketAddress(String socketPath) {
+        try {
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) addressClass.getMethod("of", String.class).invoke(null, socketPath);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Unix domain sockets require Java 16 or newer", e);
+        }
+    }
+
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final Selector selector;
+        private final InputStream in;
+        private final OutputStream out;
+        private boolean keepAlive;
+        private int timeoutMillis;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            try {
+                channel.configureBlocking(false);
+                this.selector = Selector.open();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            this.in = new BufferedInputStream(new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    byte[] single = new byte[1];
+                    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    ByteBuffer target = ByteBuffer.wrap(buffer, offset, length);
+                    int read;
+                    while ((read = channel.read(target)) == 0) {
+                        await(SelectionKey.OP_READ);
+                    }
+                    return read;
+                }
+            });
+            this.out = new BufferedOutputStream(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    ByteBuffer source = ByteBuffer.wrap(buffer, offset, length);
+                    while (source.hasRemaining()) {
+                        if (channel.write(source) == 0) {
+                            await(SelectionKey.OP_WRITE);
+                        }
+                    }
+                }
+            });
+        }
+
+        // Waits until the channel is ready, like a blocking socket with SO_TIMEOUT would.
+        private void await(int operation) throws IOException {
+            channel.register(selector, operation);
+            int ready = timeoutMillis > 0 ? selector.select(timeoutMillis) : selector.select();
+            selector.selectedKeys().clear();
+            if (ready == 0 && timeoutMillis > 0) {
+                throw new SocketTimeoutException("OPA did not answer within " + timeoutMillis + " ms");
+            }
+        }
+
+        void writeRequest(String method, String path, byte[] body) throws IOException {
+            StringBuilder head = new StringBuilder();
+            head.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+            head.append("Host: localhost\r\n");
+            if (body != null) {
+                head.append("Content-Type: application/json\r\n");
+                head.append("Content-Length: ").append(body.length).append("\r\n");
+            }
+            head.append("\r\n");
+            out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+            if (body != null) {
+                out.write(body);
+            }
+            out.flush();
+        }
+
+        Response readResponse() throws IOException {
+            String statusLine = readLine();
+            String[] status = statusLine.split(" ", 3);
+            if (status.length < 2 || !status[0].startsWith("HTTP/1.")) {
+                throw new IOException("Malformed HTTP status line: " + statusLine);
+            }
+            int code = Integer.parseInt(status[1]);
+            keepAlive = !"HTTP/1.0".equals(status[0]);
+            long contentLength = -1L;
+            boolean chunked = false;
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                if ("content-length".equals(name)) {
+                    contentLength = Long.parseLong(value);
+                } else if ("transfer-encoding".equals(name)) {
+                    chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+                } else if ("connection".equals(name)) {
+                    keepAlive = !"close".equalsIgnoreCase(value);
+                }
+            }
+            byte[] body;
+            if (chunked) {
+                body = readChunked();
+            } else if (contentLength >= 0L) {
+                body = readExactly((int) contentLength);
+            } else {
+                // Body delimited by the end of the connection.
+                keepAlive = false;
+                body = HttpUrlConnectionTransport.readFully(in);
+            }
+            return new Response(code, body);
+        }
+
+        private byte[] readChunked() throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                String sizeLine = readLine();
+                int extension = sizeLine.indexOf(';');
+                int size = Integer.parseInt((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+                if (size == 0) {
+                    // Skip trailers
+                    while (!readLine().isEmpty()) {
+                        // nothing to do
+                    }
+                    return body.toByteArray();
+                }
+                body.write(readExactly(size));
+                readLine();
+            }
+        }
+
+        private byte[] readExactly(int length) throws IOException {
+            byte[] data = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int read = in.read(data, offset, length - offset);
+                if (read < 0) {
+                    throw new EOFException("Connection closed after " + offset + " of " + length + " bytes");
+                }
+                offset += read;
+            }
+            return data;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException("Connection closed by OPA");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        void close() {
+            try {
+                selector.close();
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
+    }
+}
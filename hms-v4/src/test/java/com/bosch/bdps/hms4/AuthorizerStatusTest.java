@@ -0,0 +1,155 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuthorizerStatusTest {
+
+    private final OpaBasedAuthorizationProvider.OpaHttpClient opa = mock(OpaBasedAuthorizationProvider.OpaHttpClient.class);
+
+    private static String key(String rule, String user, String resource) {
+        return rule + "|" + user + "|analysts|" + resource + "|read=[Select]|write=[]";
+    }
+
+    @Test
+    public void testCacheStatisticsAndFlushes() {
+        DecisionCache decisions = new DecisionCache(new HeapDecisionStore(100), 60_000L, 0.0, Runnable::run);
+        decisions.put(key("hms/table_allow", "alice", "table=db.t"), true);
+        decisions.put(key("hms/table_allow", "bob", "table=db.t"), true);
+        decisions.put(key("hms/partition_allow", "alice", "partition=db.t[2024]"), true);
+        decisions.put(key("hms/table_allow", "alice", "table=db.other"), false);
+        decisions.get(key("hms/table_allow", "alice", "table=db.t"), null);
+        decisions.get(key("hms/table_allow", "carol", "table=db.t"), null);
+
+        AuthorizerStatus status = new AuthorizerStatus("http://opa:8181/v1/data", opa, "hms/user_allow");
+        assertEquals(-1, status.getCacheSize());
+        status.attach(null, decisions, null, "hms/user_allow");
+        assertEquals(4, status.getCacheSize());
+        assertEquals(0.5, status.getCacheHitRatio(), 0.001);
+
+        assertEquals(3, status.flushTable("db", "t"));
+        assertEquals(1, status.flushUser("alice"));
+        assertEquals(0, status.getCacheSize());
+    }
+
+    @Test
+    public void testFlushesOfOffHeapStoreDropAllDecisions() {
+        DecisionCache decisions = new DecisionCache(new OffHeapDecisionStore(1024 * 1024), 60_000L, 0.0, Runnable::run);
+        decisions.put(key("hms/table_allow", "alice", "table=db.t"), true);
+        decisions.put(key("hms/table_allow", "bob", "table=db.other"), true);
+
+        AuthorizerStatus status = new AuthorizerStatus("http://opa:8181/v1/data", opa, "hms/user_allow");
+        status.attach(null, decisions, null, "hms/user_allow");
+        assertEquals(-1, status.flushUser("alice"));
+        assertEquals(0, status.getCacheSize());
+    }
+
+    @Test
+    public void testHealthCheck() throws Exception {
+        AuthorizerStatus status = new AuthorizerStatus("http://opa:8181/v1/data", opa, "hms/user_allow");
+        when(opa.isHealthy()).thenReturn(true);
+        when(opa.getPolicyRevision()).thenReturn("hms=abc123");
+
+        assertTrue(status.checkHealth());
+        assertTrue(status.isHealthy());
+        verify(opa).getRevision("hms/user_allow");
+        assertEquals("hms=abc123", status.getPolicyRevision());
+
+        when(opa.isHealthy()).thenThrow(new IOException("Connection refused"));
+        assertFalse(status.checkHealth());
+        assertFalse(status.isHealthy());
+        assertEquals(1, status.getConsecutiveFailures());
+        assertTrue(status.getLastError().endsWith("Connection refused"));
+
+        status.recordSuccess();
+        assertTrue(status.isHealthy());
+    }
+
+    @Test
+    public void testRuleLatencies() {
+        AuthorizerStatus status = new AuthorizerStatus("http://opa:8181/v1/data", opa, "hms/user_allow");
+        assertEquals(0, status.getRuleLatencies().length);
+
+        OpaMetrics metrics = new OpaMetrics(1.0);
+        ObjectNode serverMetrics = new ObjectMapper().createObjectNode()
+                .put("timer_server_handler_ns", 2_000_000L)
+                .put("timer_rego_input_parse_ns", 100_000L)
+                .put("timer_rego_query_eval_ns", 1_500_000L);
+        metrics.record("hms/table_allow", 50_000L, 3_000_000L, 20_000L, serverMetrics);
+        when(opa.getMetrics()).thenReturn(metrics);
+
+        List<String> latencies = Arrays.asList(status.getRuleLatencies());
+        assertEquals(8, latencies.size());
+        assertTrue(latencies.stream().anyMatch(line -> line.startsWith("hms/table_allow server_eval: count=1,")));
+        assertTrue(latencies.stream().anyMatch(line -> line.startsWith("hms/table_allow round_trip: count=1,")));
+    }
+
+    @Test
+    public void testShadowCounters() throws Exception {
+        AuthorizerStatus status = new AuthorizerStatus("http://opa:8181/v1/data", opa, "hms/user_allow");
+        assertEquals(-1, status.getShadowMismatches());
+
+        OpaBasedAuthorizationProvider.OpaHttpClient candidate = mock(OpaBasedAuthorizationProvider.OpaHttpClient.class);
+        when(candidate.check(eq("hms_next/table_allow"), anyMap())).thenReturn(false);
+        ShadowEvaluator shadow = new ShadowEvaluator(candidate,
+                Collections.singletonMap("table", "hms_next/table_allow"), 1.0, Runnable::run);
+        status.attach(null, null, shadow, "hms/user_allow");
+        shadow.submit("table", Collections.emptyMap(), true);
+        shadow.submit("table", Collections.emptyMap(), false);
+
+        assertEquals(2, status.getShadowEvaluations());
+        assertEquals(1, status.getShadowMismatches());
+        assertEquals(0, status.getShadowErrors());
+        assertEquals(0, status.getShadowDropped());
+    }
+
+    @Test
+    public void testRegisteredWithJmx() throws Exception {
+        OpaTransport transport = mock(OpaTransport.class);
+        when(opa.getTransport()).thenReturn(transport);
+        when(transport.getActiveRequests()).thenReturn(3);
+        new AuthorizerStatus("http://jmx:8181/v1/data", opa, "hms/user_allow").register();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.bosch.bdps.opa:type=Authorizer,endpoint="
+                + ObjectName.quote("http://jmx:8181/v1/data"));
+        assertEquals(3, server.getAttribute(name, "InFlightRequests"));
+        assertNull(server.getAttribute(name, "PolicyRevision"));
+        server.unregisterMBean(name);
+    }
+}
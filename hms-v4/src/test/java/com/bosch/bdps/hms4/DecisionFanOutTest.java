@@ -0,0 +1,141 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DecisionFanOutTest {
+
+    @Test
+    public void testEvaluatesDecisionsAtTheSameTime() throws Exception {
+        DecisionFanOut fanOut = new DecisionFanOut("platform", 4, 4);
+        // Every decision waits for all others to start, which only completes if they run in parallel.
+        CountDownLatch started = new CountDownLatch(4);
+        Map<String, Callable<Boolean>> decisions = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            decisions.put("table" + i, () -> {
+                started.countDown();
+                return started.await(5, TimeUnit.SECONDS);
+            });
+        }
+
+        Map<String, Boolean> results = fanOut.evaluate(decisions);
+
+        assertEquals(4, results.size());
+        assertTrue(results.values().stream().allMatch(Boolean::booleanValue));
+        assertFalse(fanOut.usesVirtualThreads());
+    }
+
+    @Test
+    public void testParallelismIsBounded() throws Exception {
+        DecisionFanOut fanOut = new DecisionFanOut("platform", 8, 2);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Map<String, Callable<Boolean>> decisions = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            decisions.put("partition" + i, () -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                inFlight.decrementAndGet();
+                return true;
+            });
+        }
+
+        assertEquals(10, fanOut.evaluate(decisions).size());
+        assertTrue(maxInFlight.get() <= 2);
+        assertEquals(10, fanOut.getEvaluatedCount());
+    }
+
+    @Test
+    public void testFirstDenyCancelsOutstandingDecisions() throws Exception {
+        DecisionFanOut fanOut = new DecisionFanOut("platform", 2, 2);
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicInteger started = new AtomicInteger();
+        Map<String, Callable<Boolean>> decisions = new LinkedHashMap<>();
+        decisions.put("slow", () -> {
+            started.incrementAndGet();
+            slowStarted.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return true;
+        });
+        decisions.put("denied", () -> {
+            started.incrementAndGet();
+            return !slowStarted.await(5, TimeUnit.SECONDS);
+        });
+        for (int i = 0; i < 5; i++) {
+            decisions.put("queued" + i, () -> {
+                started.incrementAndGet();
+                return true;
+            });
+        }
+
+        Map<String, Boolean> results = fanOut.evaluate(decisions);
+
+        assertEquals(false, results.get("denied"));
+        assertFalse(results.containsKey("slow"));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(2, started.get());
+        assertEquals(6, fanOut.getCancelledCount());
+    }
+
+    @Test
+    public void testFailedDecisionsAreLeftOut() throws Exception {
+        DecisionFanOut fanOut = new DecisionFanOut("auto", 2, 2);
+        Map<String, Callable<Boolean>> decisions = new LinkedHashMap<>();
+        decisions.put("failed", () -> {
+            throw new IllegalStateException("OPA returned non-200: 500");
+        });
+        decisions.put("allowed", () -> true);
+
+        Map<String, Boolean> results = fanOut.evaluate(decisions);
+
+        assertEquals(1, results.size());
+        assertTrue(results.get("allowed"));
+        assertEquals(DecisionFanOut.newVirtualThreadExecutor() != null, fanOut.usesVirtualThreads());
+    }
+
+    @Test
+    public void testSingleDecisionRunsOnCallingThread() throws Exception {
+        DecisionFanOut fanOut = new DecisionFanOut("platform", 2, 2);
+        Thread caller = Thread.currentThread();
+        Map<String, Callable<Boolean>> decisions = new LinkedHashMap<>();
+        decisions.put("database", () -> Thread.currentThread() == caller);
+
+        assertTrue(fanOut.evaluate(decisions).get("database"));
+
+        decisions.put("table", () -> Thread.currentThread() == caller);
+        assertNotEquals(Boolean.TRUE, fanOut.evaluate(decisions).get("table"));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hadoop.hive.ql.security.authorization.Privilege;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EntitlementIndexTest {
+
+    private static final Privilege[] NONE = new Privilege[]{};
+    private static final Privilege[] SELECT = new Privilege[]{Privilege.SELECT};
+    private static final Privilege[] INSERT = new Privilege[]{Privilege.INSERT};
+    private static final List<String> ANALYSTS = Collections.singletonList("analysts");
+
+    private static JsonNode document(String json) throws Exception {
+        return new ObjectMapper().readTree(json);
+    }
+
+    private static EntitlementIndex index() throws Exception {
+        return EntitlementIndex.parse(document("{\"grants\": ["
+                + "{\"group\": \"analysts\", \"database\": \"sales\", \"table\": \"orders\", \"privileges\": [\"SELECT\"]},"
+                + "{\"user\": \"etl\", \"database\": \"sales\", \"table\": \"*\", \"privileges\": [\"ALL\"]},"
+                + "{\"user\": \"broken\", \"privileges\": [\"SELECT\"]}"
+                + "]}"));
+    }
+
+    @Test
+    public void testGroupGrantOnTable() throws Exception {
+        EntitlementIndex index = index();
+
+        assertEquals(2, index.size());
+        assertTrue(index.allows("sales", "orders", "alice", ANALYSTS, SELECT, NONE));
+        assertTrue(index.allows("SALES", "Orders", "alice", ANALYSTS, SELECT, NONE));
+        assertFalse(index.allows("sales", "orders", "alice", ANALYSTS, SELECT, INSERT));
+        assertFalse(index.allows("sales", "customers", "alice", ANALYSTS, SELECT, NONE));
+        assertFalse(index.allows("sales", null, "alice", ANALYSTS, SELECT, NONE));
+        assertFalse(index.allows("sales", "orders", "bob", Collections.emptyList(), SELECT, NONE));
+    }
+
+    @Test
+    public void testDatabaseWideGrant() throws Exception {
+        EntitlementIndex index = index();
+
+        assertTrue(index.allows("sales", null, "etl", null, SELECT, INSERT));
+        assertTrue(index.allows("sales", "anything", "etl", null, NONE, new Privilege[]{Privilege.DROP}));
+        assertFalse(index.allows("finance", "anything", "etl", null, SELECT, NONE));
+    }
+
+    @Test
+    public void testChecksWithoutPrivilegesAreNotAnswered() throws Exception {
+        assertFalse(index().allows("sales", "orders", "etl", ANALYSTS, NONE, NONE));
+        assertFalse(index().allows("sales", "orders", "etl", ANALYSTS, null, null));
+    }
+
+    @Test
+    public void testMissingDocument() throws Exception {
+        assertSame(EntitlementIndex.EMPTY, EntitlementIndex.parse(null));
+        assertSame(EntitlementIndex.EMPTY, EntitlementIndex.parse(document("{}")));
+    }
+
+    @Test
+    public void testRefresherSwapsIndexAndExpiresIt() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient opa = mock(OpaBasedAuthorizationProvider.OpaHttpClient.class);
+        when(opa.getDocument("hms/entitlements")).thenReturn(document(
+                "{\"grants\": [{\"user\": \"etl\", \"database\": \"sales\", \"privileges\": [\"SELECT\"]}]}"));
+        EntitlementIndexRefresher refresher = new EntitlementIndexRefresher(opa, "hms/entitlements", 20);
+
+        assertSame(EntitlementIndex.EMPTY, refresher.current());
+        refresher.refresh();
+        assertTrue(refresher.current().allows("sales", "orders", "etl", null, SELECT, NONE));
+
+        Thread.sleep(100);
+        assertSame(EntitlementIndex.EMPTY, refresher.current());
+    }
+}
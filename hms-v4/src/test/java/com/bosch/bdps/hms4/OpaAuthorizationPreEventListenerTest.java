@@ -16,11 +16,15 @@
 
 package com.bosch.bdps.hms4;
 
+import com.bosch.bdps.opa.testkit.FakeOpaServer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 public class OpaAuthorizationPreEventListenerTest {
@@ -32,4 +36,21 @@ public class OpaAuthorizationPreEventListenerTest {
 
         assertEquals(config, opaAuthorizationPreEventListener.getConf());
     }
+
+    @Test
+    public void testWarmsUpWhenTheMetastoreStarts() throws Exception {
+        try (FakeOpaServer opa = new FakeOpaServer().start()) {
+            Configuration config = new Configuration();
+            config.set("com.bosch.bdps.opa.authorization.base.endpoint", opa.getDataEndpoint());
+            config.set("com.bosch.bdps.opa.authorization.warmup.enabled", "true");
+            config.set("com.bosch.bdps.opa.authorization.warmup.connections", "2");
+
+            new OpaAuthorizationPreEventListener(config);
+
+            CompletableFuture<?> warmup = AuthorizationEngine.forEndpoint(opa.getDataEndpoint())
+                    .getComponent(CompletableFuture.class, "warmup");
+            assertTrue(warmup.isDone());
+            assertEquals(2, opa.getRequests().stream().filter(request -> "/health".equals(request.getPath())).count());
+        }
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.anyMap;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResidualPolicyTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Residual of: table_allow if { input.resources.table.dbName == "test_db"; input.privileges.readRequiredPriv[0].priv == "SELECT" }
+    static final String TABLE_RESIDUAL = "{\"queries\": [[" +
+            "{\"index\": 0, \"terms\": [{\"type\": \"ref\", \"value\": [{\"type\": \"var\", \"value\": \"eq\"}]}," +
+            " {\"type\": \"ref\", \"value\": [{\"type\": \"var\", \"value\": \"input\"}, {\"type\": \"string\", \"value\": \"resources\"}," +
+            " {\"type\": \"string\", \"value\": \"table\"}, {\"type\": \"string\", \"value\": \"dbName\"}]}," +
+            " {\"type\": \"string\", \"value\": \"test_db\"}]}," +
+            "{\"index\": 1, \"terms\": [{\"type\": \"ref\", \"value\": [{\"type\": \"var\", \"value\": \"equal\"}]}," +
+            " {\"type\": \"ref\", \"value\": [{\"type\": \"var\", \"value\": \"input\"}, {\"type\": \"string\", \"value\": \"privileges\"}," +
+            " {\"type\": \"string\", \"value\": \"readRequiredPriv\"}, {\"type\": \"number\", \"value\": 0}, {\"type\": \"string\", \"value\": \"priv\"}]}," +
+            " {\"type\": \"string\", \"value\": \"SELECT\"}]}" +
+            "]]}";
+
+    private static JsonNode json(String json) throws Exception {
+        return MAPPER.readTree(json);
+    }
+
+    private static JsonNode request(String dbName, String priv) throws Exception {
+        return json("{\"resources\": {\"table\": {\"dbName\": \"" + dbName + "\"}}," +
+                " \"privileges\": {\"readRequiredPriv\": [{\"priv\": \"" + priv + "\"}]}}");
+    }
+
+    private static Map<String, Object> input(String dbName, String priv) throws Exception {
+        return MAPPER.convertValue(request(dbName, priv), new TypeReference<Map<String, Object>>() { });
+    }
+
+    @Test
+    public void testConjunctionOfComparisons() throws Exception {
+        ResidualPolicy residual = ResidualPolicy.translate(json(TABLE_RESIDUAL));
+
+        assertTrue(residual.test(request("test_db", "SELECT")));
+        assertFalse(residual.test(request("other_db", "SELECT")));
+        assertFalse(residual.test(request("test_db", "DROP")));
+        assertFalse(residual.test(json("{\"resources\": {\"table\": null}}")));
+    }
+
+    @Test
+    public void testUnconditionalResults() throws Exception {
+        assertTrue(ResidualPolicy.translate(json("{\"queries\": [[]]}")).test(json("{}")));
+        assertFalse(ResidualPolicy.translate(json("{}")).test(json("{}")));
+    }
+
+    @Test
+    public void testNegatedReference() throws Exception {
+        ResidualPolicy residual = ResidualPolicy.translate(json("{\"queries\": [[{\"negated\": true, \"terms\":" +
+                " {\"type\": \"ref\", \"value\": [{\"type\": \"var\", \"value\": \"input\"}, {\"type\": \"string\", \"value\": \"resources\"}," +
+                " {\"type\": \"string\", \"value\": \"partition\"}]}}]]}"));
+
+        assertTrue(residual.test(json("{\"resources\": {}}")));
+        assertTrue(residual.test(json("{\"resources\": {\"partition\": false}}")));
+        assertFalse(residual.test(json("{\"resources\": {\"partition\": {\"values\": []}}}")));
+    }
+
+    @Test
+    public void testUnsupportedResiduals() throws Exception {
+        // Iteration over columns
+        assertNull(ResidualPolicy.translate(json("{\"queries\": [[{\"terms\": [{\"type\": \"ref\", \"value\": [{\"type\": \"var\", \"value\": \"eq\"}]}," +
+                " {\"type\": \"ref\", \"value\": [{\"type\": \"var\", \"value\": \"input\"}, {\"type\": \"string\", \"value\": \"resources\"}," +
+                " {\"type\": \"string\", \"value\": \"columns\"}, {\"type\": \"var\", \"value\": \"$01\"}]}," +
+                " {\"type\": \"string\", \"value\": \"ssn\"}]}]]}")));
+        // Other built-in functions
+        assertNull(ResidualPolicy.translate(json("{\"queries\": [[{\"terms\": [{\"type\": \"ref\", \"value\": [{\"type\": \"var\", \"value\": \"startswith\"}]}," +
+                " {\"type\": \"string\", \"value\": \"a\"}, {\"type\": \"string\", \"value\": \"b\"}]}]]}")));
+        // Support modules
+        assertNull(ResidualPolicy.translate(json("{\"queries\": [[]], \"support\": [{}]}")));
+    }
+
+    @Test
+    public void testCacheCompilesOncePerPrincipal() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient opa = mock(OpaBasedAuthorizationProvider.OpaHttpClient.class);
+        when(opa.compile(eq("hms/table_allow"), any(), anyMap(), anyList())).thenReturn(json(TABLE_RESIDUAL));
+        ResidualPolicyCache cache = new ResidualPolicyCache(opa, 60000, 100);
+
+        Map<String, Object> identity = new HashMap<>();
+        identity.put("username", "alice");
+        identity.put("groups", Collections.singletonList("analysts"));
+        Map<String, Object> allowed = input("test_db", "SELECT");
+        Map<String, Object> denied = input("other_db", "SELECT");
+
+        assertEquals(Boolean.TRUE, cache.evaluate("hms/table_allow", identity, allowed));
+        assertEquals(Boolean.FALSE, cache.evaluate("hms/table_allow", identity, denied));
+        verify(opa, times(2)).compile(eq("hms/table_allow"), any(), anyMap(), anyList());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testCacheFallsBackForUnsupportedResiduals() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient opa = mock(OpaBasedAuthorizationProvider.OpaHttpClient.class);
+        when(opa.compile(eq("hms/table_allow"), any(), anyMap(), anyList())).thenReturn(json("{\"queries\": [[]], \"support\": [{}]}"));
+        ResidualPolicyCache cache = new ResidualPolicyCache(opa, 60000, 100);
+
+        Map<String, Object> identity = Collections.singletonMap("username", "alice");
+        assertNull(cache.evaluate("hms/table_allow", identity, Collections.emptyMap()));
+        assertNull(cache.evaluate("hms/table_allow", identity, Collections.emptyMap()));
+        verify(opa, times(2)).compile(eq("hms/table_allow"), any(), anyMap(), anyList());
+    }
+
+    @Test
+    public void testCacheCompilesTheAllowFieldOfObjectResults() throws Exception {
+        OpaBasedAuthorizationProvider.OpaHttpClient opa = mock(OpaBasedAuthorizationProvider.OpaHttpClient.class);
+        when(opa.compile(eq("hms/table_allow"), isNull(), anyMap(), anyList())).thenReturn(json("{}"));
+        when(opa.compile(eq("hms/table_allow"), eq("allow"), anyMap(), anyList())).thenReturn(json(TABLE_RESIDUAL));
+        ResidualPolicyCache cache = new ResidualPolicyCache(opa, 60000, 100);
+
+        Map<String, Object> identity = Collections.singletonMap("username", "alice");
+        Map<String, Object> allowed = input("test_db", "SELECT");
+        Map<String, Object> denied = input("other_db", "SELECT");
+
+        assertEquals(Boolean.TRUE, cache.evaluate("hms/table_allow", identity, allowed));
+        assertEquals(Boolean.FALSE, cache.evaluate("hms/table_allow", identity, denied));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetryPolicyTest {
+
+    // Fails the given number of times with the given exception, then returns true.
+    private static Callable<Boolean> failing(int failures, Exception failure, AtomicInteger attempts) {
+        return () -> {
+            if (attempts.incrementAndGet() <= failures) {
+                throw failure;
+            }
+            return true;
+        };
+    }
+
+    @Test
+    public void testRetriesTransientFailures() throws Exception {
+        RetryPolicy retries = new RetryPolicy(2, 1, 5, 1000, 0.1, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertTrue(retries.execute(failing(2, new ConnectException("Connection refused"), attempts)));
+        assertEquals(3, attempts.get());
+        assertEquals(2, retries.getRetryCount());
+
+        attempts.set(0);
+        assertThrows(SocketTimeoutException.class,
+                () -> retries.execute(failing(3, new SocketTimeoutException("Read timed out"), attempts)));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testDoesNotRetryPermanentFailures() {
+        RetryPolicy retries = new RetryPolicy(2, 1, 5, 1000, 0.1, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(RuntimeException.class,
+                () -> retries.execute(failing(1, new RuntimeException("OPA returned non-200: 500"), attempts)));
+        assertEquals(1, attempts.get());
+        assertTrue(RetryPolicy.isTransientStatus(503));
+        assertFalse(RetryPolicy.isTransientStatus(500));
+    }
+
+    @Test
+    public void testBudgetLimitsRetries() throws Exception {
+        RetryPolicy retries = new RetryPolicy(1, 1, 1, 1000, 0.5, 2);
+        AtomicInteger attempts = new AtomicInteger();
+        Exception unavailable = new RetryPolicy.TransientStatusException("OPA returned non-200: 503");
+
+        // The reserve allows two retries, after that every request earns half a retry.
+        for (int i = 0; i < 4; i++) {
+            assertThrows(RetryPolicy.TransientStatusException.class, () -> retries.execute(failing(2, unavailable, new AtomicInteger())));
+        }
+        assertEquals(3, retries.getRetryCount());
+        assertEquals(1, retries.getBudgetExhaustedCount());
+
+        retries.execute(failing(0, unavailable, new AtomicInteger()));
+        assertTrue(retries.execute(failing(1, unavailable, attempts)));
+        assertEquals(4, retries.getRetryCount());
+    }
+
+    @Test
+    public void testDeadlineStopsRetries() {
+        RetryPolicy retries = new RetryPolicy(5, 100, 100, 0, 1.0, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ConnectException.class, () -> retries.execute(failing(10, new ConnectException("Connection refused"), attempts)));
+        assertEquals(1, attempts.get());
+        assertEquals(0, retries.getRetryCount());
+    }
+
+    @Test
+    public void testAttemptsTimeOutAtTheDeadline() throws Exception {
+        RetryPolicy retries = new RetryPolicy(2, 1, 5, 1000, 1.0, 10);
+        List<Integer> timeouts = new ArrayList<>();
+
+        assertThrows(SocketTimeoutException.class, () -> retries.execute(timeoutMillis -> {
+            timeouts.add(timeoutMillis);
+            Thread.sleep(50);
+            throw new SocketTimeoutException("Read timed out");
+        }));
+        assertEquals(3, timeouts.size());
+        assertTrue(timeouts.get(0) > 900 && timeouts.get(0) <= 1000);
+        // Later attempts only get the time that is left.
+        assertTrue(timeouts.get(2) < timeouts.get(0) - 100);
+
+        RetryPolicy unbounded = new RetryPolicy(2, 1, 5, 0, 1.0, 10);
+        assertEquals(0, (int) unbounded.execute(timeoutMillis -> timeoutMillis));
+    }
+
+    @Test
+    public void testBackoffIsBounded() {
+        RetryPolicy retries = new RetryPolicy(5, 10, 50, 1000, 0.1, 10);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(retries.backoff(0) <= 10);
+            assertTrue(retries.backoff(40) <= 50);
+        }
+    }
+}
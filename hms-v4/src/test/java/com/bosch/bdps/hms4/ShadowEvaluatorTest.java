@@ -0,0 +1,110 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.anyMap;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShadowEvaluatorTest {
+
+    private final OpaBasedAuthorizationProvider.OpaHttpClient opa = mock(OpaBasedAuthorizationProvider.OpaHttpClient.class);
+    private final Map<String, String> policyUrls = Collections.singletonMap("table", "hms_next/table_allow");
+
+    @Test
+    public void testRecordsMismatches() throws Exception {
+        when(opa.check(eq("hms_next/table_allow"), anyMap())).thenReturn(false);
+        ShadowEvaluator shadow = new ShadowEvaluator(opa, policyUrls, 1.0, Runnable::run);
+
+        shadow.submit("table", Collections.emptyMap(), true);
+        shadow.submit("table", Collections.emptyMap(), false);
+
+        assertEquals(2, shadow.getEvaluatedCount());
+        assertEquals(1, shadow.getMismatchCount());
+        assertEquals(2, shadow.getLatency().histogram("hms_next/table_allow", OpaMetrics.ROUND_TRIP).getCount());
+    }
+
+    @Test
+    public void testErrorsAndUnsampledRequests() throws Exception {
+        when(opa.check(eq("hms_next/table_allow"), anyMap())).thenThrow(new RuntimeException("down"));
+        ShadowEvaluator shadow = new ShadowEvaluator(opa, policyUrls, 1.0, Runnable::run);
+
+        shadow.submit("table", Collections.emptyMap(), true);
+        shadow.submit("database", Collections.emptyMap(), true);
+        assertEquals(1, shadow.getErrorCount());
+        assertEquals(0, shadow.getEvaluatedCount());
+
+        ShadowEvaluator unsampled = new ShadowEvaluator(opa, policyUrls, 0.0, Runnable::run);
+        unsampled.submit("table", Collections.emptyMap(), true);
+        assertEquals(0, unsampled.getErrorCount());
+    }
+
+    @Test
+    public void testDropsWhenSaturatedInsteadOfBlocking() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        when(opa.check(eq("hms_next/table_allow"), anyMap())).thenAnswer(invocation -> {
+            blocked.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+        ShadowEvaluator shadow = new ShadowEvaluator(opa, policyUrls, 1.0, 1, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            shadow.submit("table", Collections.emptyMap(), true);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertTrue(shadow.getDroppedCount() >= 8);
+        blocked.countDown();
+    }
+
+    @Test
+    public void testEvaluatesCopyTakenWhenSubmitted() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        ShadowEvaluator shadow = new ShadowEvaluator(opa, policyUrls, 1.0, queued::add);
+        Map<String, Object> resources = new HashMap<>();
+        resources.put("table", "orders");
+        shadow.submit("table", Collections.singletonMap("resources", resources), true);
+
+        // Changed by the caller after the request was handed off.
+        resources.put("table", "returns");
+        queued.get(0).run();
+        verify(opa).check(eq("hms_next/table_allow"),
+                eq(Collections.singletonMap("resources", Collections.singletonMap("table", "orders"))));
+    }
+
+    @Test
+    public void testNotCalledForUnknownTypes() throws Exception {
+        ShadowEvaluator shadow = new ShadowEvaluator(opa, policyUrls, 1.0, Runnable::run);
+        shadow.submit("column", Collections.emptyMap(), true);
+        verify(opa, never()).check(eq("hms_next/table_allow"), anyMap());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StripedLruMapTest {
+
+    @Test
+    public void testSmallMapIsExactLru() {
+        StripedLruMap<Integer> map = new StripedLruMap<>(2);
+        assertEquals(1, map.getStripeCount());
+
+        map.put("a", 1);
+        map.put("b", 2);
+        assertEquals(1, map.get("a"));
+        map.put("c", 3);
+
+        assertNull(map.get("b"));
+        assertEquals(1, map.get("a"));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testLargeMapIsStripedAndBounded() throws InterruptedException {
+        StripedLruMap<Integer> map = new StripedLruMap<>(100_000);
+        assertEquals(StripedLruMap.MAX_STRIPES, map.getStripeCount());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 100_000;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    map.put("key" + (offset + i), i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(map.size() <= 100_000);
+        assertTrue(map.size() > 90_000);
+
+        map.resize(1_600);
+        map.put("new", 1);
+        assertEquals(1, map.removeIf(key -> key.equals("new")));
+    }
+}
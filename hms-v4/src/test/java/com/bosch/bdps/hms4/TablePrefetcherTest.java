@@ -0,0 +1,135 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import org.apache.hadoop.hive.ql.security.authorization.Privilege;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TablePrefetcherTest {
+
+    private final DecisionCache decisions = new DecisionCache(new HeapDecisionStore(100), 60_000L, 0.0, Runnable::run);
+
+    private static TablePrefetcher.TableCheck check(String table) {
+        return new TablePrefetcher.TableCheck("sales", table, new Privilege[]{Privilege.SELECT}, new Privilege[]{},
+                "{\"tableName\":\"" + table + "\"}");
+    }
+
+    private static void check(TablePrefetcher prefetcher, String table, int times) {
+        for (int i = 0; i < times; i++) {
+            prefetcher.record("sales", table, () -> check(table));
+        }
+    }
+
+    private static List<String> tables(List<TablePrefetcher.TableCheck> candidates) {
+        List<String> tables = new ArrayList<>();
+        for (TablePrefetcher.TableCheck candidate : candidates) {
+            tables.add(candidate.table);
+        }
+        return tables;
+    }
+
+    @Test
+    public void testCandidatesAreFrequentTablesOfTheDatabase() {
+        TablePrefetcher prefetcher = new TablePrefetcher(decisions, 2, 0.1, 100, 10, Runnable::run);
+        check(prefetcher, "orders", 50);
+        check(prefetcher, "customers", 30);
+        check(prefetcher, "returns", 15);
+        check(prefetcher, "audit", 5);
+
+        List<TablePrefetcher.TableCheck> candidates = prefetcher.candidates("sales");
+        assertEquals(Arrays.asList("orders", "customers"), tables(candidates));
+        assertTrue(prefetcher.candidates("finance").isEmpty());
+
+        // Below the minimum share, a table is not prefetched however many may be.
+        prefetcher.update(10, 0.1, 100, 10);
+        assertEquals(3, prefetcher.candidates("sales").size());
+    }
+
+    @Test
+    public void testReplacesLeastCheckedTableWhenFull() {
+        TablePrefetcher prefetcher = new TablePrefetcher(decisions, 10, 0.0, 2, 10, Runnable::run);
+        check(prefetcher, "orders", 3);
+        check(prefetcher, "audit", 1);
+        check(prefetcher, "customers", 2);
+
+        assertEquals(Arrays.asList("orders", "customers"), tables(prefetcher.candidates("sales")));
+    }
+
+    @Test
+    public void testKeepsOneCheckPerTableAndSecond() {
+        TablePrefetcher prefetcher = new TablePrefetcher(decisions, 10, 0.0, 100, 10, Runnable::run);
+        AtomicInteger taken = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            prefetcher.record("sales", "orders", () -> {
+                taken.incrementAndGet();
+                return check("orders");
+            });
+        }
+
+        assertEquals(1, taken.get());
+        TablePrefetcher.TableCheck candidate = prefetcher.candidates("sales").get(0);
+        assertEquals("{\"tableName\":\"orders\"}", candidate.tableJson);
+        assertArrayEquals(new Privilege[]{Privilege.SELECT}, candidate.readRequiredPriv);
+    }
+
+    @Test
+    public void testPrefetchesUncachedDecisionsOnce() {
+        TablePrefetcher prefetcher = new TablePrefetcher(decisions, 10, 0.0, 100, 10, Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+        decisions.put("cached", true);
+
+        prefetcher.prefetch("cached", () -> PolicyDecision.of(loads.incrementAndGet() > 0));
+        prefetcher.prefetch("orders", () -> PolicyDecision.of(loads.incrementAndGet() < 0));
+        prefetcher.prefetch("orders", () -> PolicyDecision.of(loads.incrementAndGet() < 0));
+        prefetcher.prefetch("failing", () -> {
+            throw new IllegalStateException("down");
+        });
+
+        assertEquals(1, loads.get());
+        assertTrue(decisions.isCached("orders"));
+        assertFalse(decisions.get("orders", () -> PolicyDecision.of(true)));
+        assertFalse(decisions.isCached("failing"));
+        assertEquals(1, prefetcher.getPrefetchedCount());
+        assertEquals(1, prefetcher.getFailureCount());
+    }
+
+    @Test
+    public void testDropsWhenSaturatedInsteadOfBlocking() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        TablePrefetcher prefetcher = new TablePrefetcher(decisions, 10, 0.0, 100, 10, 1, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            prefetcher.prefetch("table" + i, () -> PolicyDecision.of(blocked.await(5, TimeUnit.SECONDS)));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(8, prefetcher.getDroppedCount());
+        blocked.countDown();
+    }
+}
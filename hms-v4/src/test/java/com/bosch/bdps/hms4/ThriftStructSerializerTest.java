@@ -0,0 +1,125 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.PrincipalType;
+import org.apache.hadoop.hive.metastore.api.SerDeInfo;
+import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThriftStructSerializerTest {
+
+    private final ObjectMapper beans = new ObjectMapper();
+    private final ObjectMapper thrift = new ObjectMapper().registerModule(ThriftStructSerializer.module());
+
+    private static Table table() {
+        List<FieldSchema> cols = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            cols.add(new FieldSchema("col" + i, "string", null));
+        }
+        StorageDescriptor sd = new StorageDescriptor();
+        sd.setCols(cols);
+        sd.setLocation("s3a://bucket/db/tbl");
+        sd.setCompressed(false);
+        sd.setSerdeInfo(new SerDeInfo("serde", "org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe",
+                Collections.singletonMap("field.delim", ",")));
+        Table table = new Table();
+        table.setDbName("db");
+        table.setTableName("tbl");
+        table.setOwner("alice");
+        table.setOwnerType(PrincipalType.USER);
+        table.setCreateTime(1_700_000_000);
+        table.setSd(sd);
+        table.setPartitionKeys(Collections.singletonList(new FieldSchema("dt", "string", "day")));
+        table.setParameters(Collections.singletonMap("owner_team", "analytics"));
+        table.setTableType("EXTERNAL_TABLE");
+        return table;
+    }
+
+    // Everything written has the name and value bean introspection gives it.
+    private static void assertMatchesBeanOutput(JsonNode bean, JsonNode written, String path) {
+        if (written.isObject()) {
+            Iterator<String> names = written.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                assertTrue(bean.has(name), path + "." + name);
+                assertMatchesBeanOutput(bean.get(name), written.get(name), path + "." + name);
+            }
+        } else if (written.isArray()) {
+            assertEquals(bean.size(), written.size(), path);
+            for (int i = 0; i < written.size(); i++) {
+                assertMatchesBeanOutput(bean.get(i), written.get(i), path + "[" + i + "]");
+            }
+        } else {
+            assertEquals(bean, written, path);
+        }
+    }
+
+    @Test
+    public void testTableKeepsShapeOfSetFields() {
+        Table table = table();
+        JsonNode written = thrift.valueToTree(table);
+
+        assertEquals("tbl", written.get("tableName").asText());
+        assertEquals("USER", written.get("ownerType").asText());
+        assertEquals(50, written.get("sd").get("cols").size());
+        assertEquals(",", written.get("sd").get("serdeInfo").get("parameters").get("field.delim").asText());
+        // Unset optional fields and Thrift helpers are left out.
+        assertFalse(written.has("viewOriginalText"));
+        assertFalse(written.has("setTableName"));
+        assertFalse(written.has("partitionKeysSize"));
+        assertFalse(written.get("sd").has("colsIterator"));
+    }
+
+    @Test
+    public void testOutputMatchesBeanOutputOfSetFields() {
+        Table table = table();
+        Partition partition = new Partition(Arrays.asList("2025-01-01"), "db", "tbl", 1_700_000_000, 0,
+                table.getSd(), Collections.emptyMap());
+        Database database = new Database("db", "analytics", "s3a://bucket/db", Collections.emptyMap());
+
+        for (Object struct : Arrays.asList(table, partition, database)) {
+            assertMatchesBeanOutput(beans.valueToTree(struct), thrift.valueToTree(struct),
+                    struct.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    public void testStructsNestedInMapsUseTheSerializer() throws Exception {
+        String json = thrift.writeValueAsString(Collections.singletonMap("input",
+                Collections.singletonMap("resources", Collections.singletonMap("table", table()))));
+
+        assertTrue(json.contains("\"tableName\":\"tbl\""));
+        assertFalse(json.contains("setTableName"));
+    }
+}
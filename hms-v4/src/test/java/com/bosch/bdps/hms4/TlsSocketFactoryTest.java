@@ -0,0 +1,166 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.hms4;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsExchange;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TlsSocketFactoryTest {
+
+    // Self-signed certificate for localhost and 127.0.0.1, trusted by and presented by both sides.
+    private static final String STORE = new File(TlsSocketFactoryTest.class.getResource("/opa-tls.p12").getPath()).getPath();
+    private static final String PASSWORD = "changeit";
+
+    private HttpsServer server;
+    private volatile String clientSubject;
+
+    @AfterEach
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private String startServer(boolean closeConnections) throws Exception {
+        SSLContext context = TlsSocketFactory.createContext(STORE, PASSWORD, STORE, PASSWORD, "PKCS12", 100, 3600);
+        server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(context) {
+            @Override
+            public void configure(HttpsParameters params) {
+                SSLParameters parameters = getSSLContext().getDefaultSSLParameters();
+                parameters.setNeedClientAuth(true);
+                params.setSSLParameters(parameters);
+            }
+        });
+        server.createContext("/v1/data/hms/table_allow", exchange -> {
+            clientSubject = ((HttpsExchange) exchange).getSSLSession().getPeerPrincipal().getName();
+            HttpUrlConnectionTransport.readFully(exchange.getRequestBody());
+            if (closeConnections) {
+                exchange.getResponseHeaders().set("Connection", "close");
+            }
+            byte[] response = "{\"result\": true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        return "https://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static TlsSocketFactory clientFactory(String keyStore) throws Exception {
+        return new TlsSocketFactory(TlsSocketFactory.createContext(STORE, PASSWORD, keyStore, PASSWORD, "PKCS12", 100, 3600),
+                new String[]{"TLSv1.3", "TLSv1.2"}, null);
+    }
+
+    @Test
+    public void testMutualTlsOverPooledConnection() throws Exception {
+        TlsSocketFactory tls = clientFactory(STORE);
+        HttpUrlConnectionTransport transport = new HttpUrlConnectionTransport(startServer(false), tls);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, transport.execute("POST", "/v1/data/hms/table_allow", "{}".getBytes(StandardCharsets.UTF_8)).getStatus());
+        }
+
+        assertEquals("CN=localhost", clientSubject);
+        awaitCount(1, tls::getFullHandshakeCount);
+        assertEquals(0, tls.getResumedHandshakeCount());
+        assertEquals(1, transport.getFullTlsHandshakes());
+    }
+
+    @Test
+    public void testNewConnectionsResumeSession() throws Exception {
+        TlsSocketFactory tls = clientFactory(STORE);
+        HttpUrlConnectionTransport transport = new HttpUrlConnectionTransport(startServer(true), tls);
+
+        assertEquals(200, transport.execute("GET", "/v1/data/hms/table_allow", null).getStatus());
+        awaitCount(1, tls::getFullHandshakeCount);
+        // The creation time of sessions has millisecond resolution.
+        Thread.sleep(5);
+        assertEquals(200, transport.execute("GET", "/v1/data/hms/table_allow", null).getStatus());
+        assertEquals(200, transport.execute("GET", "/v1/data/hms/table_allow", null).getStatus());
+
+        awaitCount(2, tls::getResumedHandshakeCount);
+        assertEquals(1, tls.getFullHandshakeCount());
+    }
+
+    @Test
+    public void testServerRejectsClientWithoutCertificate() throws Exception {
+        HttpUrlConnectionTransport transport = new HttpUrlConnectionTransport(startServer(false), clientFactory(null));
+
+        assertThrows(IOException.class, () -> transport.execute("GET", "/v1/data/hms/table_allow", null));
+    }
+
+    @Test
+    public void testClientsWithDifferentTlsSettingsDoNotShareConnections() throws Exception {
+        String endpoint = startServer(false) + "/v1/data/";
+        OpaBasedAuthorizationProvider.OpaHttpClient anonymous = new OpaBasedAuthorizationProvider.OpaHttpClient(endpoint, clientFactory(null));
+        TlsSocketFactory tls = clientFactory(STORE);
+        OpaBasedAuthorizationProvider.OpaHttpClient client = new OpaBasedAuthorizationProvider.OpaHttpClient(endpoint, tls);
+
+        assertNotSame(anonymous.getTransport(), client.getTransport());
+        assertThrows(IOException.class, () -> anonymous.getDocument("hms/table_allow"));
+        assertTrue(client.getDocument("hms/table_allow").asBoolean());
+
+        // Reloaded TLS settings take effect for an existing client.
+        anonymous.setTls(tls);
+        assertSame(client.getTransport(), anonymous.getTransport());
+        assertTrue(anonymous.getDocument("hms/table_allow").asBoolean());
+    }
+
+    @Test
+    public void testRestrictsProtocolsAndCipherSuites() throws Exception {
+        String[] ciphers = {"TLS_AES_128_GCM_SHA256"};
+        TlsSocketFactory tls = new TlsSocketFactory(
+                TlsSocketFactory.createContext(STORE, PASSWORD, STORE, PASSWORD, "PKCS12", 100, 3600),
+                new String[]{"TLSv1.3"}, ciphers);
+        HttpUrlConnectionTransport transport = new HttpUrlConnectionTransport(startServer(false), tls);
+
+        assertEquals(200, transport.execute("GET", "/v1/data/hms/table_allow", null).getStatus());
+        assertArrayEquals(ciphers, tls.getDefaultCipherSuites());
+        assertTrue(new HttpUrlConnectionTransport("http://127.0.0.1:1").getFullTlsHandshakes() < 0);
+    }
+
+    // Handshakes are counted on a thread of the JDK, after the request has returned.
+    private static void awaitCount(long expected, LongSupplier count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+}
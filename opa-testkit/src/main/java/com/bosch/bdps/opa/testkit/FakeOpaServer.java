@@ -0,0 +1,427 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.opa.testkit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process HTTP server speaking the parts of the OPA REST API the authorizer uses:
+ * the data API, for decisions and documents, and the health API. Decisions are computed
+ * by functions of the input registered per rule. Latency, errors, slow responses and
+ * dropped connections can be injected, and every request is recorded, so clients can be
+ * tested against a real socket without Docker or network access.
+ *
+ * <pre>
+ * try (FakeOpaServer opa = new FakeOpaServer().start()) {
+ *     opa.decide("hms/table_allow", input -&gt; input.path("identity").path("username").asText().equals("alice"));
+ *     opa.setLatency(Latency.logNormal(2, 1));
+ *     client = new OpaHttpClient(opa.getDataEndpoint());
+ * }
+ * </pre>
+ */
+public class FakeOpaServer implements AutoCloseable {
+
+    private static final String DATA_API = "/v1/data/";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Computes the result of a rule from the input of a request.
+     */
+    public interface Decision {
+        /**
+         * @return the result, e.g. a boolean, or null if the rule is undefined for the input
+         */
+        Object decide(JsonNode input) throws Exception;
+    }
+
+    /**
+     * A request received by the server.
+     */
+    public static final class Request {
+        private final String method;
+        private final String path;
+        private final String query;
+        private final JsonNode body;
+        private final String client;
+        private final long receivedNanos;
+
+        Request(String method, String path, String query, JsonNode body, String client, long receivedNanos) {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.body = body;
+            this.client = client;
+            this.receivedNanos = receivedNanos;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * The path below the data API, e.g. {@code hms/table_allow}, or the full path for other APIs.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public JsonNode getBody() {
+            return body;
+        }
+
+        public JsonNode getInput() {
+            return body.path("input");
+        }
+
+        /**
+         * Address and port of the client connection; requests on the same connection share it.
+         */
+        public String getClient() {
+            return client;
+        }
+
+        public long getReceivedNanos() {
+            return receivedNanos;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Decision> decisions = new ConcurrentHashMap<>();
+    private final Map<String, Object> documents = new ConcurrentHashMap<>();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final Set<String> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private volatile Latency latency = Latency.NONE;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private volatile double slowResponseRate;
+    private volatile long slowResponseMillis;
+    private volatile double dropRate;
+    private volatile boolean healthy = true;
+
+    /**
+     * Creates a server on a free port of the loopback interface.
+     */
+    public FakeOpaServer() throws IOException {
+        this(0);
+    }
+
+    public FakeOpaServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        AtomicInteger count = new AtomicInteger();
+        // A thread per request, so injected latency does not queue requests behind each other.
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-opa-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+    }
+
+    public FakeOpaServer start() {
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * The base endpoint to configure the authorizer with, e.g. {@code http://127.0.0.1:12345/v1/data}.
+     */
+    public String getDataEndpoint() {
+        return "http://127.0.0.1:" + getPort() + "/v1/data";
+    }
+
+    /**
+     * Answers queries of a rule, e.g. {@code hms/table_allow}, with the result of the function.
+     */
+    public FakeOpaServer decide(String path, Decision decision) {
+        decisions.put(trim(path), decision);
+        return this;
+    }
+
+    /**
+     * Answers all queries of a rule with the same decision.
+     */
+    public FakeOpaServer allow(String path, boolean allowed) {
+        return decide(path, input -> allowed);
+    }
+
+    /**
+     * Serves a data document, e.g. the entitlement index, to GET requests. It is converted to JSON.
+     */
+    public FakeOpaServer document(String path, Object value) {
+        documents.put(trim(path), value);
+        return this;
+    }
+
+    public FakeOpaServer setLatency(Latency latency) {
+        this.latency = latency == null ? Latency.NONE : latency;
+        return this;
+    }
+
+    /**
+     * Fails a fraction of requests with the given status, e.g. 503, after their latency.
+     */
+    public FakeOpaServer setErrorRate(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    /**
+     * Sends the status line and headers of a fraction of responses right away, but the body
+     * only after the given delay, like a server that stalls mid-response.
+     */
+    public FakeOpaServer setSlowResponses(double rate, long delayMillis) {
+        this.slowResponseRate = rate;
+        this.slowResponseMillis = delayMillis;
+        return this;
+    }
+
+    /**
+     * Closes the connection of a fraction of requests without answering them.
+     */
+    public FakeOpaServer setDropRate(double rate) {
+        this.dropRate = rate;
+        return this;
+    }
+
+    /**
+     * Makes the health API report the server as unhealthy, e.g. while bundles are not activated.
+     */
+    public FakeOpaServer setHealthy(boolean healthy) {
+        this.healthy = healthy;
+        return this;
+    }
+
+    /**
+     * Removes injected faults and latency, keeping decisions and documents.
+     */
+    public FakeOpaServer resetFaults() {
+        this.latency = Latency.NONE;
+        this.errorRate = 0;
+        this.slowResponseRate = 0;
+        this.dropRate = 0;
+        this.healthy = true;
+        return this;
+    }
+
+    public List<Request> getRequests() {
+        return Collections.unmodifiableList(new ArrayList<>(requests));
+    }
+
+    public List<Request> getRequests(String path) {
+        String trimmed = trim(path);
+        List<Request> matching = new ArrayList<>();
+        for (Request request : requests) {
+            if (request.getPath().equals(trimmed)) {
+                matching.add(request);
+            }
+        }
+        return matching;
+    }
+
+    public void clearRequests() {
+        requests.clear();
+        clients.clear();
+        maxInFlight.set(inFlight.get());
+    }
+
+    /**
+     * Distinct client connections requests arrived on since the last {@link #clearRequests()},
+     * which shows whether a client reuses its connections.
+     */
+    public int getConnectionCount() {
+        return clients.size();
+    }
+
+    /**
+     * Most requests handled at the same time since the last {@link #clearRequests()}.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            respond(exchange);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        long received = System.nanoTime();
+        String method = exchange.getRequestMethod();
+        String rawPath = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        byte[] body = readFully(exchange.getRequestBody());
+        String client = exchange.getRemoteAddress().toString();
+        boolean data = rawPath.startsWith(DATA_API);
+        String path = data ? trim(rawPath.substring(DATA_API.length())) : rawPath;
+        JsonNode json = body.length == 0 ? MissingNode.getInstance() : MAPPER.readTree(body);
+        requests.add(new Request(method, path, query == null ? "" : query, json, client, received));
+        clients.add(client);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (dropRate > 0 && random.nextDouble() < dropRate) {
+            // Closing the exchange before sending headers closes the connection.
+            exchange.close();
+            return;
+        }
+        sleepMicros(latency.nextMicros());
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            send(exchange, errorStatus, "{\"code\": \"internal_error\", \"message\": \"injected\"}", 0);
+            return;
+        }
+        long delayMillis = slowResponseRate > 0 && random.nextDouble() < slowResponseRate ? slowResponseMillis : 0;
+
+        if ("/health".equals(rawPath)) {
+            send(exchange, healthy ? 200 : 500, "{}", delayMillis);
+        } else if (data && "POST".equals(method)) {
+            answer(exchange, path, json.path("input"), query, received, delayMillis);
+        } else if (data && "GET".equals(method)) {
+            ObjectNode response = MAPPER.createObjectNode();
+            Object document = documents.get(path);
+            if (document != null) {
+                response.set("result", MAPPER.valueToTree(document));
+            }
+            send(exchange, 200, response.toString(), delayMillis);
+        } else {
+            send(exchange, 404, "{\"code\": \"resource_not_found\"}", delayMillis);
+        }
+    }
+
+    private void answer(HttpExchange exchange, String path, JsonNode input, String query,
+                        long received, long delayMillis) throws IOException {
+        Decision decision = decisions.get(path);
+        ObjectNode response = MAPPER.createObjectNode();
+        long evalStart = System.nanoTime();
+        try {
+            Object result = decision == null ? null : decision.decide(input);
+            if (result != null) {
+                response.set("result", MAPPER.valueToTree(result));
+            }
+        } catch (Exception e) {
+            send(exchange, 500, "{\"code\": \"internal_error\", \"message\": "
+                    + MAPPER.writeValueAsString(String.valueOf(e.getMessage())) + "}", delayMillis);
+            return;
+        }
+        if (query != null && query.contains("metrics=true")) {
+            ObjectNode metrics = response.putObject("metrics");
+            metrics.put("timer_rego_query_eval_ns", System.nanoTime() - evalStart);
+            metrics.put("timer_server_handler_ns", System.nanoTime() - received);
+        }
+        send(exchange, 200, response.toString(), delayMillis);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body, long delayMillis) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (delayMillis <= 0) {
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+            return;
+        }
+        // A chunked body can be flushed in parts, so the client sees the start of the response.
+        exchange.sendResponseHeaders(status, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes, 0, 1);
+            out.flush();
+            sleepMicros(delayMillis * 1000L);
+            out.write(bytes, 1, bytes.length - 1);
+        }
+    }
+
+    private static void sleepMicros(long micros) {
+        if (micros <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MICROSECONDS.sleep(micros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String trim(String path) {
+        String trimmed = path;
+        while (trimmed.startsWith("/")) {
+            trimmed = trimmed.substring(1);
+        }
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
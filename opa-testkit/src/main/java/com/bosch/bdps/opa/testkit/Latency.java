@@ -0,0 +1,52 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.opa.testkit;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of the time the fake OPA server spends on a request before it answers.
+ */
+public interface Latency {
+
+    Latency NONE = () -> 0L;
+
+    /**
+     * Returns the latency of the next request in microseconds.
+     */
+    long nextMicros();
+
+    static Latency fixed(long millis) {
+        return () -> millis * 1000L;
+    }
+
+    static Latency uniform(long minMillis, long maxMillis) {
+        return () -> ThreadLocalRandom.current().nextLong(minMillis * 1000L, maxMillis * 1000L + 1);
+    }
+
+    static Latency exponential(double meanMillis) {
+        return () -> (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanMillis * 1000.0);
+    }
+
+    /**
+     * A long-tailed distribution, as usually measured for network services. With sigma 1,
+     * the 99th percentile is about ten times the median.
+     */
+    static Latency logNormal(double medianMillis, double sigma) {
+        return () -> (long) (medianMillis * 1000.0 * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+}
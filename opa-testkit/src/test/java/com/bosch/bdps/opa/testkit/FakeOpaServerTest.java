@@ -0,0 +1,155 @@
+/*
+ * Copyright 2025 the Hive Metastore Opa Authorizer Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bosch.bdps.opa.testkit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FakeOpaServerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private FakeOpaServer opa;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        opa = new FakeOpaServer().start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        opa.close();
+    }
+
+    private HttpURLConnection connect(String method, String path, String body) throws IOException {
+        return connect(method, path, body, 5000);
+    }
+
+    // The read timeout has to be set before the request is sent, it does not apply to an open connection.
+    private HttpURLConnection connect(String method, String path, String body, int readTimeoutMillis) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://127.0.0.1:" + opa.getPort() + path).openConnection();
+        conn.setRequestMethod(method);
+        conn.setReadTimeout(readTimeoutMillis);
+        if (body != null) {
+            conn.setDoOutput(true);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return conn;
+    }
+
+    private JsonNode post(String path, String body) throws IOException {
+        HttpURLConnection conn = connect("POST", path, body);
+        assertEquals(200, conn.getResponseCode());
+        return MAPPER.readTree(readFully(conn.getInputStream()));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    public void testAnswersFromDecisionFunctionsAndRecords() throws Exception {
+        opa.decide("hms/table_allow", input -> "alice".equals(input.path("identity").path("username").asText()));
+        opa.document("hms/entitlements", Collections.singletonMap("grants", Collections.emptyList()));
+
+        assertTrue(post("/v1/data/hms/table_allow", "{\"input\": {\"identity\": {\"username\": \"alice\"}}}").get("result").asBoolean());
+        assertFalse(post("/v1/data/hms/table_allow", "{\"input\": {\"identity\": {\"username\": \"bob\"}}}").get("result").asBoolean());
+        assertFalse(post("/v1/data/hms/unknown_allow", "{\"input\": {}}").has("result"));
+        assertTrue(post("/v1/data/hms/table_allow?metrics=true", "{\"input\": {}}").path("metrics").has("timer_rego_query_eval_ns"));
+
+        HttpURLConnection document = connect("GET", "/v1/data/hms/entitlements", null);
+        assertTrue(MAPPER.readTree(readFully(document.getInputStream())).path("result").has("grants"));
+        assertEquals(200, connect("GET", "/health?bundles=true", null).getResponseCode());
+        opa.setHealthy(false);
+        assertEquals(500, connect("GET", "/health", null).getResponseCode());
+
+        assertEquals(3, opa.getRequests("hms/table_allow").size());
+        assertEquals("bob", opa.getRequests("hms/table_allow").get(1).getInput().path("identity").path("username").asText());
+        assertEquals("metrics=true", opa.getRequests("hms/table_allow").get(2).getQuery());
+        assertEquals(7, opa.getRequests().size());
+    }
+
+    @Test
+    public void testInjectsLatencyAndErrors() throws Exception {
+        opa.allow("hms/table_allow", true).setLatency(Latency.fixed(50));
+        long start = System.nanoTime();
+        post("/v1/data/hms/table_allow", "{\"input\": {}}");
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        opa.resetFaults().setErrorRate(1.0, 503);
+        assertEquals(503, connect("POST", "/v1/data/hms/table_allow", "{\"input\": {}}").getResponseCode());
+
+        opa.resetFaults().decide("hms/table_allow", input -> {
+            throw new IllegalStateException("conflicting rules");
+        });
+        assertEquals(500, connect("POST", "/v1/data/hms/table_allow", "{\"input\": {}}").getResponseCode());
+    }
+
+    @Test
+    public void testSlowResponsesAndDroppedConnections() throws Exception {
+        opa.allow("hms/table_allow", true).setSlowResponses(1.0, 3000);
+        HttpURLConnection slow = connect("POST", "/v1/data/hms/table_allow", "{\"input\": {}}", 1000);
+        // The headers and the first byte of the body arrive at once, the rest only after the delay.
+        assertEquals(200, slow.getResponseCode());
+        InputStream body = slow.getInputStream();
+        assertEquals('{', body.read());
+        assertThrows(SocketTimeoutException.class, () -> readFully(body));
+
+        opa.resetFaults().setDropRate(1.0);
+        assertThrows(IOException.class, () -> connect("POST", "/v1/data/hms/table_allow", "{\"input\": {}}").getResponseCode());
+    }
+
+    @Test
+    public void testLatencyDistributions() {
+        assertEquals(5000, Latency.fixed(5).nextMicros());
+        for (int i = 0; i < 100; i++) {
+            long uniform = Latency.uniform(1, 2).nextMicros();
+            assertTrue(uniform >= 1000 && uniform <= 2000);
+            assertTrue(Latency.exponential(1).nextMicros() >= 0);
+            assertTrue(Latency.logNormal(1, 1).nextMicros() >= 0);
+        }
+    }
+}